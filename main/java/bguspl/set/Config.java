@@ -36,6 +36,16 @@ public class Config {
      */
     public final int deckSize;
 
+    /**
+     * The number of cards from which set searches run in parallel (smaller collections are searched sequentially)
+     */
+    public final int parallelSearchThreshold;
+
+    /**
+     * The number of threads of the parallel set search pool (0 for the common fork/join pool)
+     */
+    public final int parallelSearchThreads;
+
     /**
      * The number of human players in the game.
      */
@@ -56,6 +66,37 @@ public class Config {
      */
     public final boolean hints;
 
+    /**
+     * The average number of keys each computer player presses per second (0 or less for none)
+     */
+    public final double computerKeyPressesPerSecond;
+
+    /**
+     * True iff the times between the key presses of a computer player are random (a Poisson process, like a human),
+     * false if they are fixed
+     */
+    public final boolean computerPoissonKeyPresses;
+
+    /**
+     * How computer players choose their keys: "Random" slots, or the "Solver" that presses the slots of a legal set
+     */
+    public final String computerStrategy;
+
+    /**
+     * The number of milliseconds a solver computer player takes to react to a set on the table
+     */
+    public final long computerReactionMillis;
+
+    /**
+     * The probability that a solver computer player mistakes one of the cards of the set for another card
+     */
+    public final double computerErrorRate;
+
+    /**
+     * Whether to run the players on virtual threads (needs java 21 or later, platform threads otherwise)
+     */
+    public final boolean virtualThreads;
+
     /**
      * The number of milliseconds until the dealer reshuffles the deck (0 show timer since last action, -1 show nothing)
      */
@@ -77,7 +118,8 @@ public class Config {
     public final long pointFreezeMillis;
 
     /**
-     * The number of milliseconds to delay before removing/placing a card on the table
+     * The number of milliseconds the ui takes to show each card placed on/removed from the table (the game itself
+     * does not wait)
      */
     public final long tableDelayMillis;
 
@@ -197,6 +239,8 @@ public class Config {
         featureSize = Integer.parseInt(properties.getProperty("FeatureSize", "3"));
         featureCount = Integer.parseInt(properties.getProperty("FeatureCount", "4"));
         deckSize = (int) Math.pow(featureSize, featureCount);
+        parallelSearchThreshold = Integer.parseInt(properties.getProperty("ParallelSearchThreshold", "500"));
+        parallelSearchThreads = Integer.parseInt(properties.getProperty("ParallelSearchThreads", "0"));
 
         // gameplay settings
         humanPlayers = Integer.parseInt(properties.getProperty("HumanPlayers", "2"));
@@ -204,6 +248,12 @@ public class Config {
         players = humanPlayers + computerPlayers;
 
         hints = Boolean.parseBoolean(properties.getProperty("Hints", "False"));
+        computerKeyPressesPerSecond = Double.parseDouble(properties.getProperty("ComputerKeyPressesPerSecond", "10"));
+        computerPoissonKeyPresses = Boolean.parseBoolean(properties.getProperty("ComputerPoissonKeyPresses", "False"));
+        computerStrategy = properties.getProperty("ComputerStrategy", "Random");
+        computerReactionMillis = (long) (Double.parseDouble(properties.getProperty("ComputerReactionSeconds", "1")) * 1000.0);
+        computerErrorRate = Double.parseDouble(properties.getProperty("ComputerErrorRate", "0.1"));
+        virtualThreads = Boolean.parseBoolean(properties.getProperty("VirtualThreads", "False"));
         turnTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutSeconds", "60")) * 1000.0);
         turnTimeoutWarningMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutWarningSeconds", "60")) * 1000.0);
         pointFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PointFreezeSeconds", "1")) * 1000.0);
@@ -18,6 +18,19 @@ public interface UserInterface {
      */
     void removeCard(int slot);
 
+    /**
+     * Draw the card images of several cards at once, with a single repaint.
+     * @param cards - the card ids.
+     * @param slots - the slot numbers (cards[i] in slots[i]).
+     */
+    void placeCards(int[] cards, int[] slots);
+
+    /**
+     * Draw empty card images in several slots at once, with a single repaint.
+     * @param slots - the slot numbers.
+     */
+    void removeCards(int[] slots);
+
     /**
      * Draw a player name text in the specified slot.
      * @param player - the card id.
@@ -50,6 +63,20 @@ public interface UserInterface {
      */
     void setCountdown(long millies, boolean warn);
 
+    /**
+     * Count down to the deadline by the ui itself, until the next call to this method or to setCountdown.
+     * @param deadline      - the time the countdown reaches 0 (in System.currentTimeMillis terms).
+     * @param warningMillis - the time left from which the timer is painted in red and displays milliseconds.
+     */
+    void setCountdownDeadline(long deadline, long warningMillis);
+
+    /**
+     * The time by which all the card changes drawn so far are shown, later than now only while the ui is still
+     * showing them one by one (see Config.tableDelayMillis).
+     * @return the time (in System.currentTimeMillis terms).
+     */
+    long cardsShownBy();
+
     /**
      * Set the elapsed time to the specified number of milliseconds.
      * @param millies - the milliseconds to be shown.
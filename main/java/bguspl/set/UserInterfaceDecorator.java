@@ -33,6 +33,20 @@ public class UserInterfaceDecorator implements UserInterface {
         if (ui != null) ui.removeCard(slot);
     }
 
+    @Override
+    public void placeCards(int[] cards, int[] slots) {
+        logger.severe("placing cards " + Arrays.toString(cards) + " in slots " + Arrays.toString(slots));
+        util.spin();
+        if (ui != null) ui.placeCards(cards, slots);
+    }
+
+    @Override
+    public void removeCards(int[] slots) {
+        logger.severe("removing cards from slots " + Arrays.toString(slots));
+        util.spin();
+        if (ui != null) ui.removeCards(slots);
+    }
+
     @Override
     public void placeToken(int player, int slot) {
         logger.severe("player " + (player + 1) + " placing token on slot " + slot);
@@ -68,6 +82,18 @@ public class UserInterfaceDecorator implements UserInterface {
         if (ui != null) ui.setCountdown(millies, warn);
     }
 
+    @Override
+    public void setCountdownDeadline(long deadline, long warningMillis) {
+        logger.severe("counting down for " + (deadline - System.currentTimeMillis()) + " (warning from " + warningMillis + ")");
+        util.spin();
+        if (ui != null) ui.setCountdownDeadline(deadline, warningMillis);
+    }
+
+    @Override
+    public long cardsShownBy() {
+        return ui != null ? ui.cardsShownBy() : System.currentTimeMillis();
+    }
+
     @Override
     public void setElapsed(long millies) {
         logger.severe("updating elapsed time to " + millies);
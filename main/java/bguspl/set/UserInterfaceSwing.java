@@ -6,8 +6,11 @@ import javax.swing.*;
 import java.awt.*;
 import java.io.FileNotFoundException;
 import java.net.URL;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -73,6 +76,14 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
 
         private final JLabel timerField;
 
+        /**
+         * Counts down to the deadline on the event dispatch thread, firing only when the text is due to change: every
+         * 10 milliseconds in the warning window, and once a second before it.
+         */
+        private final Timer countdownTimer;
+        private volatile long deadline;
+        private volatile long warningMillis;
+
         private String generateTime(long millies, boolean warn) {
             if (warn)
                 return format("Remaining Time: %.2f", (double) millies / 1000.0f);
@@ -88,16 +99,50 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             timerField.setForeground(Color.BLACK);
 
             add(timerField);
+
+            countdownTimer = new Timer(0, e -> countdown());
+            countdownTimer.setRepeats(false); //every tick schedules the next one
         }
 
         private void setCountdown(long millies, boolean warn) {
-            timerField.setText(generateTime(millies, warn));
-            timerField.setForeground(warn ? Color.RED : Color.BLACK);
+            countdownTimer.stop();
+            showCountdown(millies, warn);
+        }
+
+        private void setCountdownDeadline(long deadline, long warningMillis) {
+            this.deadline = deadline;
+            this.warningMillis = warningMillis;
+            countdownTimer.setInitialDelay(0);
+            countdownTimer.restart();
+        }
+
+        private void countdown() {
+            long millies = Math.max(0, deadline - System.currentTimeMillis());
+            boolean warn = millies <= warningMillis;
+            showCountdown(millies, warn);
+            if (millies == 0)
+                return;
+            //the hundredths change every 10 ms in the warning window, before it the seconds (or the warning) are next
+            long next = warn ? 10 : Math.min(millies % 1000 + 1, millies - warningMillis);
+            countdownTimer.setInitialDelay((int) next);
+            countdownTimer.restart();
+        }
+
+        private void showCountdown(long millies, boolean warn) {
+            String text = generateTime(millies, warn);
+            if (!text.equals(timerField.getText())) {
+                timerField.setText(text);
+                timerField.setForeground(warn ? Color.RED : Color.BLACK);
+            }
         }
 
         private void setElapsed(long millies) {
             timerField.setText("Elapsed time: " + millies / 1000);
         }
+
+        private void dispose() {
+            countdownTimer.stop();
+        }
     }
 
     private class GamePanel extends JLayeredPane {
@@ -108,6 +153,26 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         private final boolean[][][] playerTokens;
         private final JLabel[][] tokenText;
 
+        /**
+         * The slots waiting to have their card shown, and the timer that shows one of them every table delay while
+         * there are any, so the cards still appear one by one while the game goes on without waiting (null if there
+         * is no table delay). Guarded by the queue itself.
+         */
+        private final Queue<Integer> reveals = new ArrayDeque<>();
+        private final Timer revealTimer;
+
+        /**
+         * The image waiting to be shown in every slot (null if none). A slot that changes again before it is shown
+         * keeps its place in the queue and shows only its latest card. The tokens of a slot are drawn only when it
+         * has none, so a token never shows up on a card that is not drawn yet.
+         */
+        private final AtomicReferenceArray<Image> pendingImages = new AtomicReferenceArray<>(config.tableSize);
+
+        /**
+         * The time by which all the slots waiting now are shown.
+         */
+        private volatile long revealedBy;
+
         private Image loadImageResource(String filename) {
             URL imageResource = getClass().getClassLoader().getResource(filename);
             if (imageResource == null)
@@ -146,29 +211,94 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
                     add(tokenText[row][column]);
                 }
             }
+
+            revealTimer = config.tableDelayMillis > 0 ? new Timer((int) config.tableDelayMillis, e -> revealNext()) : null;
         }
 
-        private void placeCard(int slot, int card) {
+        //shows the image in the slot now, or after the slots waiting before it if there is a table delay
+        private void showCard(int slot, Image image) {
+            if (revealTimer == null) {
+                grid[slot / config.columns][slot % config.columns] = image;
+                return;
+            }
+            synchronized (reveals) {
+                if (pendingImages.getAndSet(slot, image) == null) {
+                    reveals.add(slot);
+                    revealedBy = Math.max(System.currentTimeMillis(), revealedBy) + config.tableDelayMillis;
+                }
+                if (!revealTimer.isRunning())
+                    revealTimer.start();
+            }
+        }
+
+        //shows the card of the next slot waiting, on the event dispatch thread, and stops the timer when none is left
+        private void revealNext() {
+            int slot;
+            Image image;
+            synchronized (reveals) {
+                Integer next = reveals.poll();
+                if (reveals.isEmpty())
+                    revealTimer.stop();
+                if (next == null)
+                    return;
+                slot = next;
+                image = pendingImages.getAndSet(slot, null);
+            }
             int row = slot / config.columns;
             int column = slot % config.columns;
-            grid[row][column] = deck[card];
+            grid[row][column] = image;
+            showTokens(row, column); //the tokens placed on the card while it was waiting
             validate();
             repaint();
         }
 
+        private long revealedBy() {
+            return revealTimer == null ? System.currentTimeMillis() : Math.max(System.currentTimeMillis(), revealedBy);
+        }
+
+        private void dispose() {
+            if (revealTimer == null)
+                return;
+            synchronized (reveals) {
+                revealTimer.stop();
+                reveals.clear();
+            }
+        }
+
+        private void repaintNow() {
+            if (revealTimer == null) {
+                validate();
+                repaint();
+            }
+        }
+
+        private void placeCard(int slot, int card) {
+            showCard(slot, deck[card]);
+            repaintNow();
+        }
+
         private void removeCard(int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            grid[row][column] = emptyCard;
-            validate();
-            repaint();
+            showCard(slot, emptyCard);
+            repaintNow();
+        }
+
+        private void placeCards(int[] slots, int[] cards) {
+            for (int i = 0; i < slots.length; i++)
+                showCard(slots[i], deck[cards[i]]);
+            repaintNow();
+        }
+
+        private void removeCards(int[] slots) {
+            for (int slot : slots)
+                showCard(slot, emptyCard);
+            repaintNow();
         }
 
         private void placeToken(int player, int slot) {
             int row = slot / config.columns;
             int column = slot % config.columns;
             playerTokens[player][row][column] = true;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
+            showTokens(row, column);
         }
 
         private void removeTokens() {
@@ -181,7 +311,7 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             int column = slot % config.columns;
             for (int player = 0; player < playerTokens.length; player++) {
                 playerTokens[player][row][column] = false;
-                tokenText[row][column].setText(generatePlayersTokenText(row, column));
+                showTokens(row, column);
             }
         }
 
@@ -189,7 +319,13 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             int row = slot / config.columns;
             int column = slot % config.columns;
             playerTokens[player][row][column] = false;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
+            showTokens(row, column);
+        }
+
+        //draws the tokens of the slot, unless its card is still waiting to be shown
+        private void showTokens(int row, int column) {
+            if (pendingImages.get(row * config.columns + column) == null)
+                tokenText[row][column].setText(generatePlayersTokenText(row, column));
         }
 
         private String generatePlayersTokenText(int row, int column) {
@@ -284,6 +420,16 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         gamePanel.removeCard(slot);
     }
 
+    @Override
+    public void placeCards(int[] cards, int[] slots) {
+        gamePanel.placeCards(slots, cards);
+    }
+
+    @Override
+    public void removeCards(int[] slots) {
+        gamePanel.removeCards(slots);
+    }
+
     @Override
     public void placeToken(int player, int slot) {
         gamePanel.placeToken(player, slot);
@@ -309,6 +455,16 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         timerPanel.setCountdown(millies, warn);
     }
 
+    @Override
+    public void setCountdownDeadline(long deadline, long warningMillis) {
+        timerPanel.setCountdownDeadline(deadline, warningMillis);
+    }
+
+    @Override
+    public long cardsShownBy() {
+        return gamePanel.revealedBy();
+    }
+
     @Override
     public void setElapsed(long millies) {
         timerPanel.setElapsed(millies);
@@ -333,6 +489,8 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
 
     @Override
     public void dispose() {
+        timerPanel.dispose();
+        gamePanel.dispose();
         super.dispose();
     }
 }
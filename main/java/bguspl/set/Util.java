@@ -1,6 +1,8 @@
 package bguspl.set;
 
+import java.util.BitSet;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * An interface for general utilities provided for convenience.
@@ -15,6 +17,15 @@ public interface Util {
      */
     int[] cardToFeatures(int card);
 
+    /**
+     * Returns a single feature of a card, without allocating (see cardToFeatures).
+     *
+     * @param card    - the card id.
+     * @param feature - the index of the feature (between 0 and config.featureCount - 1).
+     * @return - the value of the feature (between 0 and config.featureSize - 1).
+     */
+    int cardFeature(int card, int feature);
+
     /**
      * Converts an array of card ids to an array of features (see cardToFeatures method).
      *
@@ -31,6 +42,33 @@ public interface Util {
      */
     boolean testSet(int[] cards);
 
+    /**
+     * Checks a batch of candidate sets at once.
+     *
+     * @param flatCandidates - the card ids of the candidates, setSize consecutive cards per candidate.
+     * @param setSize        - the number of cards in each candidate.
+     * @param out            - bit i is set iff candidate i forms a legal set (and cleared otherwise).
+     */
+    void testSets(int[] flatCandidates, int setSize, BitSet out);
+
+    /**
+     * Packs a card id into a long, with config.featureSize bits per feature and only the bit of the card's value set
+     * in each feature.
+     *
+     * @param card - the card id.
+     * @return - the packed card.
+     * @throws UnsupportedOperationException - if config.featureCount * config.featureSize is more than 64 bits.
+     */
+    long cardToPacked(int card);
+
+    /**
+     * Checks if an array of packed cards (see cardToPacked method) forms a legal set, without allocating.
+     *
+     * @param packedCards - the array of config.featureSize packed cards.
+     * @return - true iff the array forms a legal set.
+     */
+    boolean testPackedSet(long[] packedCards);
+
     /**
      * Finds and returns up to count sets in the given collection of cards.
      *
@@ -40,6 +78,56 @@ public interface Util {
      */
     List<int[]> findSets(List<Integer> deck, int count);
 
+    /**
+     * Lazily streams the sets in the given collection of cards, in the same order as findSets. The stream may be made
+     * parallel, in which case disjoint ranges of the first card of the sets are searched concurrently.
+     *
+     * @param deck - a collection of cards (may not include null objects).
+     * @return - a stream of integer arrays, each one contains the card ids of a legal set.
+     */
+    Stream<int[]> streamSets(List<Integer> deck);
+
+    /**
+     * Counts the legal sets in the given array of cards, without allocating.
+     *
+     * @param cards - an array of distinct card ids.
+     * @return - the number of legal sets in the array.
+     */
+    int countSets(int[] cards);
+
+    /**
+     * Counts the legal sets in the given collection of cards, without allocating.
+     *
+     * @param cards - the collection of cards (bit i is set iff card i is in it).
+     * @return - the number of legal sets in the collection.
+     */
+    int countSets(BitSet cards);
+
+    /**
+     * Checks if there is a legal set in the given array of cards, stopping at the first one found.
+     *
+     * @param cards - an array of distinct card ids.
+     * @return - true iff the array contains a legal set.
+     */
+    boolean anySet(int[] cards);
+
+    /**
+     * Checks if there is a legal set in the given collection of cards, stopping at the first one found.
+     *
+     * @param cards - the collection of cards (bit i is set iff card i is in it).
+     * @return - true iff the collection contains a legal set.
+     */
+    boolean anySet(BitSet cards);
+
+    /**
+     * Counts the legal sets that contain the given card and other cards of the given collection.
+     *
+     * @param card  - the card id that every counted set contains.
+     * @param cards - the collection of the other cards (bit i is set iff card i is in it).
+     * @return - the number of such sets.
+     */
+    int countSetsContaining(int card, BitSet cards);
+
     /**
      * Spin a random number of times (for debugging/testing).
      */
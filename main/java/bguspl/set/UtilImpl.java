@@ -1,10 +1,20 @@
 package bguspl.set;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * The implementation of the UserInterface interface.
@@ -13,15 +23,100 @@ public class UtilImpl implements Util {
 
     private final Config config;
 
+    /**
+     * The features of every card, featureCount consecutive values per card (built on first use, then never changed).
+     * The search loops read it (and packedCards) once per call and pass it down, to keep volatile reads off them.
+     */
+    private volatile byte[] features;
+
+    /**
+     * True iff the features of a card fit in a long when packed (see packedCards).
+     */
+    private final boolean packable;
+
+    /**
+     * The cards packed into longs, featureSize bits per feature with only the bit of the card's value set in each
+     * (built on first use, then never changed).
+     */
+    private volatile long[] packedCards;
+
+    /**
+     * Masks of the lowest bit, the highest bit and all the bits of every feature field in a packed card.
+     */
+    private final long lowBits, highBits, fieldBits;
+
+    /**
+     * The pool of the parallel set searches (if config.parallelSearchThreads is positive). Its threads are daemons, so
+     * it never keeps the program alive and needs no shutdown.
+     */
+    private ForkJoinPool searchPool;
+
+    /**
+     * A bitset of the deck for every thread that counts the sets of an array, so it looks the cards up without
+     * allocating. It is left clear after every use.
+     */
+    private final ThreadLocal<BitSet> scratchCards;
+
     public UtilImpl(Config config) {
+        if (config.featureSize - 1 > Byte.MAX_VALUE)
+            throw new IllegalArgumentException("features of size " + config.featureSize + " do not fit in a byte");
         this.config = config;
+        long low = 0, high = 0;
+        packable = config.featureSize > 0 && config.featureCount * config.featureSize <= Long.SIZE;
+        for (int i = 0; packable && i < config.featureCount; ++i) {
+            low |= 1L << (i * config.featureSize);
+            high |= 1L << (i * config.featureSize + config.featureSize - 1);
+        }
+        lowBits = low;
+        highBits = high;
+        fieldBits = (high << 1) - low;
+        scratchCards = ThreadLocal.withInitial(() -> new BitSet(config.deckSize));
     }
 
-    private void cardToFeatures(int card, int[] features) {
-        for (int i = config.featureCount - 1; i >= 0; --i) {
-            features[i] = card % config.featureSize;
-            card /= config.featureSize;
+    // the feature matrix, decoding the digits of every card id (in base featureSize) on first use
+    private byte[] features() {
+        byte[] features = this.features;
+        if (features == null) synchronized (this) {
+            features = this.features;
+            if (features == null) {
+                features = new byte[config.deckSize * config.featureCount];
+                for (int card = 0; card < config.deckSize; ++card)
+                    for (int i = config.featureCount - 1, digits = card; i >= 0; --i) {
+                        features[card * config.featureCount + i] = (byte) (digits % config.featureSize);
+                        digits /= config.featureSize;
+                    }
+                this.features = features;
+            }
         }
+        return features;
+    }
+
+    // the packed cards, built from the feature matrix on first use
+    private long[] packedCards() {
+        long[] packedCards = this.packedCards;
+        if (packedCards == null) synchronized (this) {
+            packedCards = this.packedCards;
+            if (packedCards == null) {
+                byte[] features = features();
+                packedCards = new long[config.deckSize];
+                for (int card = 0; card < config.deckSize; ++card)
+                    for (int i = 0; i < config.featureCount; ++i)
+                        packedCards[card] |= 1L << (i * config.featureSize + features[card * config.featureCount + i]);
+                this.packedCards = packedCards;
+            }
+        }
+        return packedCards;
+    }
+
+    @Override
+    public int cardFeature(int card, int feature) {
+        return features()[card * config.featureCount + feature];
+    }
+
+    private void cardToFeatures(int card, int[] features) {
+        byte[] matrix = features();
+        for (int i = 0; i < config.featureCount; ++i)
+            features[i] = matrix[card * config.featureCount + i];
     }
 
     @Override
@@ -38,23 +133,87 @@ public class UtilImpl implements Util {
         return features;
     }
 
+    @Override
+    public long cardToPacked(int card) {
+        if (!packable)
+            throw new UnsupportedOperationException("cards with " + config.featureCount + " features of size " + config.featureSize + " do not fit in a long");
+        return packedCards()[card];
+    }
+
+    /**
+     * Returns a mask with the highest bit of every feature field set iff the field is not zero in the given value.
+     */
+    private long nonZeroFields(long value) {
+        long rest = fieldBits & ~highBits;
+        return (((value & rest) + rest) | value) & highBits;
+    }
+
+    /**
+     * Expands a mask of the highest bits of some feature fields (see nonZeroFields) to all the bits of those fields.
+     */
+    private long wholeFields(long highBitsOfFields) {
+        return (highBitsOfFields << 1) - (highBitsOfFields >>> (config.featureSize - 1));
+    }
+
+    /**
+     * Checks all the features at once on the union (bitwise or) of featureSize packed cards: a feature is legal iff
+     * its field has a single bit set (all the same) or all of its bits set (all different).
+     */
+    private boolean isLegalUnion(long union) {
+        long severalValues = union & (union - lowBits);
+        long missingValues = union ^ fieldBits;
+        return (nonZeroFields(severalValues) & nonZeroFields(missingValues)) == 0;
+    }
+
+    /**
+     * Returns the fields of the features that are the same in two packed cards, given their union: the fields that
+     * do not have several values set.
+     */
+    private long sameFields(long unionOfTwo) {
+        return fieldBits & ~wholeFields(nonZeroFields(unionOfTwo & (unionOfTwo - lowBits)));
+    }
+
+    /**
+     * Checks if a packed card can extend a partial set of two cards or more: it must keep the value of every feature
+     * that is the same in the partial set (see sameFields), and repeat no value of the others.
+     */
+    private boolean extendsPartialSet(long card, long union, long sameFields) {
+        return ((card ^ union) & sameFields) == 0 && (card & union & ~sameFields) == 0;
+    }
+
+    @Override
+    public boolean testPackedSet(long[] packedCards) {
+        if (packedCards.length != config.featureSize) return false;
+        long union = 0;
+        for (long card : packedCards) union |= card;
+        return isLegalUnion(union);
+    }
+
     @Override
     public boolean testSet(int[] cards) {
-        int[][] features = cardsToFeatures(Arrays.copyOf(cards, cards.length));
-        for (int i = 0; i < config.featureCount; ++i) {
+        if (packable && cards.length == config.featureSize) {
+            long[] packed = packedCards();
+            long union = 0;
+            for (int card : cards) union |= packed[card];
+            return isLegalUnion(union);
+        }
+
+        byte[] features = features();
+        int count = config.featureCount;
+        for (int i = 0; i < count; ++i) {
             boolean sameSame = true, butDifferent = true;
 
             // check if this features is sameSame in all cards
-            for (int j = 1; j < features.length; ++j)
-                if (features[0][i] != features[j][i]) {
+            for (int j = 1; j < cards.length; ++j)
+                if (features[cards[0] * count + i] != features[cards[j] * count + i]) {
                     sameSame = false;
                     break;
                 }
 
             // check if this feature is butDifferent in all cards
-            for (int j = 1; j < features.length; ++j)
-                for (int k = j; k < features.length; ++k)
-                    if (features[j - 1][i] == features[k][i]) {
+            for (int j = 1; j < cards.length; ++j)
+                for (int k = j; k < cards.length; ++k)
+                    if (features[cards[j - 1] * count + i] == features[cards[k] * count + i]) {
                         butDifferent = false;
                         break;
                     }
@@ -64,30 +223,479 @@ public class UtilImpl implements Util {
         return true;
     }
 
+    @Override
+    public void testSets(int[] flatCandidates, int setSize, BitSet out) {
+        int candidates = flatCandidates.length / setSize;
+        if (!packable || setSize != config.featureSize) {
+            for (int i = 0; i < candidates; ++i)
+                out.set(i, testSet(Arrays.copyOfRange(flatCandidates, i * setSize, (i + 1) * setSize)));
+            return;
+        }
+
+        // one pass over the flat array, reading the packed cards and writing a word of results at a time
+        long[] packed = packedCards();
+        int card = 0;
+        for (int word = 0; word * Long.SIZE < candidates; ++word) {
+            long results = 0;
+            int inWord = Math.min(Long.SIZE, candidates - word * Long.SIZE);
+            for (int bit = 0; bit < inWord; ++bit) {
+                long union = 0;
+                for (int end = card + setSize; card < end; ++card) union |= packed[flatCandidates[card]];
+                if (isLegalUnion(union)) results |= 1L << bit;
+            }
+            int from = word * Long.SIZE;
+            out.clear(from, from + inWord);
+            for (long bits = results; bits != 0; bits &= bits - 1)
+                out.set(from + Long.numberOfTrailingZeros(bits));
+        }
+    }
+
+    /**
+     * Computes the only card that completes a set of size 3 with the two given cards: every feature is either the
+     * same in both cards (so the third one must share it) or different (so the third one must have the remaining
+     * value), which is exactly -(a + b) mod 3 per feature.
+     */
+    private int thirdCard(byte[] features, int first, int second) {
+        int third = 0;
+        for (int i = 0, a = first * config.featureCount, b = second * config.featureCount; i < config.featureCount; ++i)
+            third = third * config.featureSize + (2 * config.featureSize - features[a + i] - features[b + i]) % config.featureSize;
+        return third;
+    }
+
+    /**
+     * Walks the legal sets of a deck lazily, in the order of the combination walker, covering the combinations whose
+     * first card is at an index below end. Sets of size 3 are found in O(n^2): the third card of every pair is
+     * computed directly and looked up in a position table of the deck (-1 for cards that are not in it), and requiring
+     * it to come after the pair reports every set once. Splitting hands out the first half of the remaining first
+     * indices, so a parallel stream searches disjoint ranges while keeping the order of the results.
+     */
+    private class SetSpliterator implements Spliterator<int[]> {
+
+        private final int[] cards;
+        private final int[] position;
+        private final byte[] features;
+        private final long[] packed;
+        private int[] combination;
+        private final int end;
+
+        // the state of the pruning search: the number of cards picked, the union of the first i + 1 of them and the
+        // features that are the same in the first two
+        private int depth;
+        private long[] unions = new long[config.featureSize];
+        private long sameFields;
+
+        SetSpliterator(int[] cards) {
+            this.cards = cards;
+            features = features();
+            packed = packable ? packedCards() : null;
+            if (config.featureSize == 3) {
+                position = new int[config.deckSize];
+                Arrays.fill(position, -1);
+                for (int i = 0; i < cards.length; ++i)
+                    position[cards[i]] = i;
+            } else position = null;
+            combination = firstCombination(0);
+            end = cards.length;
+        }
+
+        // a search of the same deck over the first indices in [begin, end)
+        private SetSpliterator(SetSpliterator parent, int begin, int end) {
+            this.cards = parent.cards;
+            this.position = parent.position;
+            this.features = parent.features;
+            this.packed = parent.packed;
+            this.combination = firstCombination(begin);
+            this.end = end;
+        }
+
+        private SetSpliterator(SetSpliterator parent, int end) {
+            this.cards = parent.cards;
+            this.position = parent.position;
+            this.features = parent.features;
+            this.packed = parent.packed;
+            this.combination = parent.combination.clone();
+            this.end = end;
+            this.depth = parent.depth;
+            this.unions = parent.unions.clone();
+            this.sameFields = parent.sameFields;
+        }
+
+        // the first combination (indices in the deck) starting with the card at index begin
+        private int[] firstCombination(int begin) {
+            int[] combination = new int[position == null ? config.featureSize : 2];
+            for (int i = 0; i < combination.length; ++i)
+                combination[i] = begin + i;
+            return combination;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super int[]> action) {
+            int[] set = position != null ? nextOfThree() : packable ? nextByPruning() : nextOfCombinations();
+            if (set == null) return false;
+            action.accept(set);
+            return true;
+        }
+
+        // the next set of three (null if none), completing pairs of cards with their third card
+        private int[] nextOfThree() {
+            int n = cards.length, i = combination[0], j = combination[1];
+            while (i < end && i < n - 2) {
+                if (j >= n - 1) {
+                    j = ++i + 1;
+                    continue;
+                }
+                int k = position[thirdCard(features, cards[i], cards[j])];
+                if (k > j++) {
+                    combination[0] = i;
+                    combination[1] = j;
+                    int[] set = {cards[i], cards[j - 1], cards[k]};
+                    Arrays.sort(set);
+                    return set;
+                }
+            }
+            combination[0] = i;
+            combination[1] = j;
+            return null;
+        }
+
+        /**
+         * The next set (null if none), found by extending partial sets card by card in lexicographic order. The
+         * first two cards decide for every feature whether it is the same (and must stay the same) or different
+         * (and must not repeat a value), so any card that breaks a feature cuts its whole subtree, and a complete
+         * set needs no further test.
+         */
+        private int[] nextByPruning() {
+            int n = cards.length, r = combination.length;
+            if (depth == r) combination[--depth]++; // resume after the last set found
+            while (true) {
+                int index = combination[depth];
+                if (index > n - (r - depth) || (depth == 0 && index >= end)) {
+                    if (depth == 0) return null;
+                    combination[--depth]++;
+                    continue;
+                }
+                long card = packed[cards[index]];
+                if (depth >= 2 && !extendsPartialSet(card, unions[depth - 1], sameFields)) {
+                    combination[depth]++;
+                    continue;
+                }
+                unions[depth] = depth == 0 ? card : unions[depth - 1] | card;
+                if (depth == 1) sameFields = sameFields(unions[1]);
+                if (++depth == r) return Arrays.stream(combination).map(i -> cards[i]).sorted().toArray();
+                combination[depth] = index + 1;
+            }
+        }
+
+        // the next set (null if none), testing every combination of featureSize cards
+        private int[] nextOfCombinations() {
+            int n = cards.length, r = combination.length;
+            while (combination[0] < end && combination[r - 1] < n) {
+                int[] set = null;
+                long union = 0;
+                if (packable)
+                    for (int index : combination) union |= packed[cards[index]];
+                if (!packable || isLegalUnion(union)) {
+                    set = Arrays.stream(combination).map(index -> cards[index]).sorted().toArray();
+                    if (!testSet(set)) set = null;
+                }
+
+                // generate next combination in lexicographic order
+                int t = r - 1;
+                while (t != 0 && combination[t] == n - r + t) --t;
+                combination[t]++;
+                for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
+
+                if (set != null) return set;
+            }
+            return null;
+        }
+
+        @Override
+        public Spliterator<int[]> trySplit() {
+            int middle = (combination[0] + end) >>> 1;
+            if (middle <= combination[0]) return null;
+            SetSpliterator prefix = new SetSpliterator(this, middle);
+            combination = firstCombination(middle);
+            depth = 0;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return Math.max(0, end - combination[0]);
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+    }
+
+    /**
+     * Searches the sets whose first card is at an index in [begin, end) by recursively halving the range, so that
+     * idle pool threads steal the pending halves. All the tasks of a search share the number of sets found so far,
+     * and stop as soon as it reaches the count (which makes a count of 1 a "find any" search).
+     */
+    @SuppressWarnings("serial")
+    private class SetSearchTask extends RecursiveTask<List<int[]>> {
+
+        private final SetSpliterator deck;
+        private final int begin, end, grain, count;
+        private final AtomicInteger found;
+
+        SetSearchTask(SetSpliterator deck, int begin, int end, int grain, int count, AtomicInteger found) {
+            this.deck = deck;
+            this.begin = begin;
+            this.end = end;
+            this.grain = grain;
+            this.count = count;
+            this.found = found;
+        }
+
+        @Override
+        protected List<int[]> compute() {
+            if (end - begin > grain) {
+                int middle = (begin + end) >>> 1;
+                SetSearchTask first = new SetSearchTask(deck, begin, middle, grain, count, found);
+                first.fork();
+                List<int[]> sets = new SetSearchTask(deck, middle, end, grain, count, found).compute();
+                List<int[]> firstSets = first.join();
+                firstSets.addAll(sets);
+                return firstSets;
+            }
+
+            List<int[]> sets = new LinkedList<>();
+            SetSpliterator range = new SetSpliterator(deck, begin, end);
+            while (found.get() < count && range.tryAdvance(sets::add))
+                found.incrementAndGet();
+            return sets;
+        }
+    }
+
+    // the pool of the parallel set searches, created on first use
+    private ForkJoinPool searchPool() {
+        if (config.parallelSearchThreads <= 0) return ForkJoinPool.commonPool();
+        synchronized (this) {
+            if (searchPool == null) searchPool = new ForkJoinPool(config.parallelSearchThreads, pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setDaemon(true);
+                thread.setName("set-search-" + thread.getPoolIndex());
+                return thread;
+            }, null, false);
+            return searchPool;
+        }
+    }
+
+    // finds up to count sets with a fork/join search over the first card of the sets
+    private List<int[]> findSetsInParallel(List<Integer> deck, int count) {
+        SetSpliterator root = new SetSpliterator(deck.stream().mapToInt(Integer::intValue).toArray());
+        ForkJoinPool pool = searchPool();
+        int grain = Math.max(1, deck.size() / (pool.getParallelism() * 8));
+        List<int[]> sets = pool.invoke(new SetSearchTask(root, 0, deck.size(), grain, count, new AtomicInteger()));
+        return sets.size() > count ? new LinkedList<>(sets.subList(0, count)) : sets;
+    }
+
+    /**
+     * Counts the sets whose smallest card is at an index in [begin, end) of a sorted array of cards, by recursively
+     * halving the range like SetSearchTask. The tasks share the number of sets counted so far and stop once it
+     * reaches the limit (which makes a limit of 1 an "any set" search).
+     */
+    @SuppressWarnings("serial")
+    private class SetCountTask extends RecursiveTask<Integer> {
+
+        private final int[] cards;
+        private final BitSet members;
+        private final int begin, end, grain, limit;
+        private final AtomicInteger found;
+
+        SetCountTask(int[] cards, BitSet members, int begin, int end, int grain, int limit, AtomicInteger found) {
+            this.cards = cards;
+            this.members = members;
+            this.begin = begin;
+            this.end = end;
+            this.grain = grain;
+            this.limit = limit;
+            this.found = found;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (end - begin > grain) {
+                int middle = (begin + end) >>> 1;
+                SetCountTask first = new SetCountTask(cards, members, begin, middle, grain, limit, found);
+                first.fork();
+                int count = new SetCountTask(cards, members, middle, end, grain, limit, found).compute();
+                return count + first.join();
+            }
+
+            byte[] features = features();
+            long[] packed = packable ? packedCards() : null;
+            int count = 0;
+            for (int i = begin; i < end && found.get() < limit; ++i) {
+                int sets = countSetsFrom(features, packed, cards, members, i, limit - found.get());
+                found.addAndGet(sets);
+                count += sets;
+            }
+            return count;
+        }
+    }
+
+    // counts up to limit sets whose smallest card is cards[first], in a sorted array of cards (also given as a bitset)
+    private int countSetsFrom(byte[] features, long[] packed, int[] cards, BitSet members, int first, int limit) {
+        if (config.featureSize != 3)
+            return countSets(packed, cards, first + 1, 1, packed[cards[first]], 0, limit);
+        int count = 0;
+        for (int second = first + 1; second < cards.length && count < limit; ++second) {
+            int third = thirdCard(features, cards[first], cards[second]);
+            if (third > cards[second] && members.get(third)) ++count;
+        }
+        return count;
+    }
+
+    // counts up to limit sets with a fork/join search over the smallest card of the sets
+    private int countSetsInParallel(BitSet members, int limit) {
+        int[] cards = members.stream().toArray();
+        ForkJoinPool pool = searchPool();
+        int grain = Math.max(1, cards.length / (pool.getParallelism() * 8));
+        return Math.min(limit, pool.invoke(new SetCountTask(cards, members, 0, cards.length, grain, limit, new AtomicInteger())));
+    }
+
     @Override
     public List<int[]> findSets(List<Integer> deck, int count) {
-        LinkedList<int[]> sets = new LinkedList<>();
-        int n = deck.size();
-        int r = config.featureSize;
-        int[] combination = new int[r];
+        if (count <= 0) return new LinkedList<>();
+        if (deck.size() >= config.parallelSearchThreshold) return findSetsInParallel(deck, count);
+        return streamSets(deck).limit(count).collect(Collectors.toCollection(LinkedList::new));
+    }
 
+    @Override
+    public Stream<int[]> streamSets(List<Integer> deck) {
+        return StreamSupport.stream(new SetSpliterator(deck.stream().mapToInt(Integer::intValue).toArray()), false);
+    }
+
+    /**
+     * Counts up to limit legal sets that complete the union of the depth cards picked so far with cards from
+     * cards[from..], pruning like the set spliterator: once two cards are picked, a card that breaks a feature is
+     * skipped with its whole subtree. Recursing keeps the partial sets on the stack, so nothing is allocated.
+     */
+    private int countSets(long[] packed, int[] cards, int from, int depth, long union, long sameFields, int limit) {
+        if (depth == config.featureSize) return isLegalUnion(union) ? 1 : 0;
+        int count = 0;
+        for (int i = from; i <= cards.length - (config.featureSize - depth) && count < limit; ++i) {
+            long card = packed[cards[i]];
+            if (depth >= 2 && !extendsPartialSet(card, union, sameFields)) continue;
+            long next = union | card;
+            count += countSets(packed, cards, i + 1, depth + 1, next, depth == 1 ? sameFields(next) : sameFields, limit - count);
+        }
+        return count;
+    }
+
+    // same as above for a collection of cards given as a bitset
+    private int countSets(long[] packed, BitSet cards, int from, int depth, long union, long sameFields, int limit) {
+        if (depth == config.featureSize) return isLegalUnion(union) ? 1 : 0;
+        int count = 0;
+        for (int card = cards.nextSetBit(from); card >= 0 && count < limit; card = cards.nextSetBit(card + 1)) {
+            if (depth >= 2 && !extendsPartialSet(packed[card], union, sameFields)) continue;
+            long next = union | packed[card];
+            count += countSets(packed, cards, card + 1, depth + 1, next, depth == 1 ? sameFields(next) : sameFields, limit - count);
+        }
+        return count;
+    }
+
+    // counts up to limit sets of three, completing every pair with its third card
+    private int countSetsOfThree(BitSet cards, int limit) {
+        byte[] features = features();
+        int count = 0;
+        for (int first = cards.nextSetBit(0); first >= 0; first = cards.nextSetBit(first + 1))
+            for (int second = cards.nextSetBit(first + 1); second >= 0; second = cards.nextSetBit(second + 1)) {
+                int third = thirdCard(features, first, second);
+                if (third > second && cards.get(third) && ++count >= limit) return count;
+            }
+        return count;
+    }
+
+    private int countSets(int[] cards, int limit) {
+        if (config.featureSize == 3 || (packable && cards.length >= config.parallelSearchThreshold)) {
+            BitSet bits = scratchCards.get();
+            for (int card : cards) bits.set(card);
+            try {
+                return countSets(bits, limit);
+            } finally {
+                for (int card : cards) bits.clear(card);
+            }
+        }
+        if (!packable)
+            return findSets(Arrays.stream(cards).boxed().collect(Collectors.toList()), limit).size();
+        return countSets(packedCards(), cards, 0, 0, 0, 0, limit);
+    }
+
+    private int countSets(BitSet cards, int limit) {
+        if ((packable || config.featureSize == 3) && cards.cardinality() >= config.parallelSearchThreshold)
+            return countSetsInParallel(cards, limit);
+        if (config.featureSize == 3) return countSetsOfThree(cards, limit);
+        if (!packable)
+            return findSets(cards.stream().boxed().collect(Collectors.toList()), limit).size();
+        return countSets(packedCards(), cards, 0, 0, 0, 0, limit);
+    }
+
+    @Override
+    public int countSets(int[] cards) {
+        return countSets(cards, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int countSets(BitSet cards) {
+        return countSets(cards, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean anySet(int[] cards) {
+        return countSets(cards, 1) > 0;
+    }
+
+    @Override
+    public boolean anySet(BitSet cards) {
+        return countSets(cards, 1) > 0;
+    }
+
+    @Override
+    public int countSetsContaining(int card, BitSet cards) {
+        int count = 0;
+        if (config.featureSize == 3) {
+            // every pair {other, third} is counted once, from its smaller card
+            byte[] features = features();
+            for (int other = cards.nextSetBit(0); other >= 0; other = cards.nextSetBit(other + 1)) {
+                int third = thirdCard(features, card, other);
+                if (third > other && cards.get(third)) ++count;
+            }
+            return count;
+        }
+
+        int[] others = cards.stream().filter(other -> other != card).toArray();
+        if (packable) {
+            long[] packed = packedCards();
+            return countSets(packed, others, 0, 1, packed[card], 0, Integer.MAX_VALUE);
+        }
+
+        int r = config.featureSize - 1;
+        if (others.length < r) return 0;
+        int[] combination = new int[r];
+        int[] set = new int[r + 1];
+        set[r] = card;
         for (int i = 0; i < r; ++i)
             combination[i] = i;
 
-        while (combination[r - 1] < deck.size()) {
-            int[] cards = Arrays.stream(combination).map(deck::get).sorted().toArray();
-            if (testSet(cards)) {
-                sets.add(cards);
-                if (sets.size() >= count) return sets;
-            }
+        while (combination[r - 1] < others.length) {
+            for (int i = 0; i < r; ++i)
+                set[i] = others[combination[i]];
+            if (testSet(set)) ++count;
 
             // generate next combination in lexicographic order
             int t = r - 1;
-            while (t != 0 && combination[t] == n - r + t) --t;
+            while (t != 0 && combination[t] == others.length - r + t) --t;
             combination[t]++;
             for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
         }
-        return sets;
+        return count;
     }
 
     public void spin() {
@@ -0,0 +1,78 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class is a bounded lock-free queue of key presses (slots), filled by any number of input threads and emptied
+ * by the player thread. Every cell has a sequence number telling whether it is free for the producer at a position or
+ * holds the slot for the consumer at that position, so offering and polling never block and never allocate.
+ */
+class ActionQueue {
+
+    /**
+     * The queued slots, and the sequence number of every cell.
+     */
+    private final int[] slots;
+    private final AtomicLongArray sequences;
+
+    /**
+     * The next position to offer at (shared by the producers) and to poll from (the consumer's only).
+     */
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+
+    ActionQueue(int capacity) {
+        slots = new int[capacity];
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++)
+            sequences.set(i, i);
+    }
+
+    /**
+     * Adds a slot to the end of the queue, if it is not full.
+     *
+     * @param slot - the slot of the key pressed.
+     * @return - true iff the slot was added.
+     */
+    boolean offer(int slot) {
+        long position = tail.get();
+        while (true) {
+            int cell = (int) (position % slots.length);
+            long sequence = sequences.get(cell);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[cell] = slot;
+                    sequences.set(cell, position + 1); // publish the slot to the consumer
+                    return true;
+                }
+                position = tail.get();
+            } else if (sequence < position) {
+                return false; // the cell still holds the slot from a lap ago
+            } else {
+                position = tail.get(); // another producer took this position
+            }
+        }
+    }
+
+    /**
+     * Removes the slot at the head of the queue (called only by the player thread).
+     *
+     * @return - the slot, or -1 if the queue is empty.
+     */
+    int poll() {
+        int cell = (int) (head % slots.length);
+        if (sequences.get(cell) != head + 1) return -1;
+        int slot = slots[cell];
+        sequences.set(cell, head + slots.length); // free the cell for the producer one lap ahead
+        head++;
+        return slot;
+    }
+
+    /**
+     * @return - true iff there is no slot to poll.
+     */
+    boolean isEmpty() {
+        return sequences.get((int) (head % slots.length)) != head + 1;
+    }
+}
@@ -0,0 +1,33 @@
+package bguspl.set.ex;
+
+/**
+ * This class holds a player's request to check a set, as queued for the dealer. Every player reuses a single claim
+ * for the whole game: it only fills it again after the dealer answered the previous one.
+ */
+class Claim {
+
+    /**
+     * The id of the player that claims the set.
+     */
+    final int player;
+
+    /**
+     * The slots of the claimed set, the cards that were in them when the claim was made, and the versions of the
+     * slots then (the claim is stale if any of these slots changed since).
+     */
+    final int[] slots;
+    final int[] cards;
+    final int[] versions;
+
+    /**
+     * The time the claim was made (System.nanoTime), by which the dealer orders the claims.
+     */
+    long time;
+
+    Claim(int player, int setSize) {
+        this.player = player;
+        this.slots = new int[setSize];
+        this.cards = new int[setSize];
+        this.versions = new int[setSize];
+    }
+}
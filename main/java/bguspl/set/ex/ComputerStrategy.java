@@ -0,0 +1,14 @@
+package bguspl.set.ex;
+
+/**
+ * This interface chooses the key presses of a computer player. The player asks it for a key at the configured pace
+ * (see Config.computerKeyPressesPerSecond), on the timer thread of the game.
+ */
+interface ComputerStrategy {
+
+    /**
+     * Chooses the next key press of the computer player.
+     * @return - the slot to press, or -1 to press nothing this time.
+     */
+    int nextKey();
+}
@@ -1,8 +1,20 @@
 package bguspl.set.ex;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -26,9 +38,15 @@ public class Dealer implements Runnable {
     private final Player[] players;
 
     /**
-     * The list of card ids that are left in the dealer's deck.
+     * The card ids that are left in the dealer's deck.
      */
-    private final List<Integer> deck;
+    private final Deck deck;
+
+    /**
+     * The cards that are still in the game (in the deck or on the table), and the number of legal sets among them.
+     */
+    private final BitSet cardsInGame;
+    private int remainingSets;
 
     /**
      * True iff game should be terminated.
@@ -40,24 +58,62 @@ public class Dealer implements Runnable {
      */
     private long reshuffleTime = Long.MAX_VALUE;
 
-    /////
     /**
-     * 
+     * The sets claimed by the players and not checked yet (any player may add to it), and the batch of claims the
+     * dealer is currently checking. A player has at most one claim waiting, so both are bounded by the players.
      */
-    public static final Object lockGame = new Object();
-    public static final Object canAnnounce = new Object();
+    private final BlockingQueue<Claim> claims;
+    private final List<Claim> checkedClaims;
 
-    public static volatile int wakeByPlayer = -1; //this is for to tell the dealer which player put 3 tokens
+    /**
+     * The thread of the dealer.
+     */
+    private Thread dealerThread;
 
-    public static volatile boolean isBusy = false; // true means that the dealer is busy now
+    /////
+    /**
+     * The lock by which the dealer starts and terminates the player threads one by one (a lock rather than a monitor,
+     * so waiting on it doesn't pin a virtual thread to its carrier).
+     */
+    public static final ReentrantLock lockGame = new ReentrantLock();
+    public static final Condition playerStep = lockGame.newCondition(); //a player thread started or terminated
+
+    /**
+     * The timer of the game, shared by the players of this dealer for counting down their freezes and for the key
+     * presses of the computer players, on a single daemon thread (so the player threads don't have to wake up for
+     * it). It is shut down when the game is terminated.
+     */
+    private final ScheduledExecutorService scheduler;
 
 
     public Dealer(Env env, Table table, Player[] players) {
+        this(env, table, players, new Random());
+    }
+
+    /**
+     * @param random - the source of randomness for drawing cards from the deck (e.g. seeded, for a repeatable game).
+     */
+    public Dealer(Env env, Table table, Player[] players, Random random) {
         this.env = env;
         this.table = table;
         this.players = players;
-        deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList()); // creates a sorted list 0 - deckSize
+        claims = new ArrayBlockingQueue<>(Math.max(1, players.length));
+        checkedClaims = new ArrayList<>(players.length);
+        deck = new Deck(env.config.deckSize, random); // all the cards 0 - deckSize
+        cardsInGame = new BitSet(env.config.deckSize);
+        cardsInGame.set(0, env.config.deckSize);
+        remainingSets = env.util.countSets(cardsInGame);
         terminate = false;
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    //the timer of the game, for the players of this dealer
+    ScheduledExecutorService scheduler() {
+        return scheduler;
     }
 
     /**
@@ -65,23 +121,28 @@ public class Dealer implements Runnable {
      */
     @Override
     public void run() {
+        dealerThread = Thread.currentThread();
         env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
         /////
         //create players threads
-        synchronized(lockGame){
+        if(env.config.virtualThreads && !Threads.virtualThreadsAvailable())
+            env.logger.warning("virtual threads need java 21 or later, running the players on platform threads.");
+        lockGame.lock();
+        try{
             for(int i = 0; i < players.length; i++){         
-                Thread playerThread = new Thread(players[i], "player " + i);
+                Thread playerThread = Threads.newThread(env.config.virtualThreads, players[i], "player " + i);
                 playerThread.start();
                 try{
-                    lockGame.wait(); //for a serial creating
+                    playerStep.await(); //for a serial creating
                 }catch (InterruptedException e){}                
             }
+        }finally{
+            lockGame.unlock();
         }
         /////
         while (!shouldFinish()) {
             placeCardsOnTable();
             timerLoop();
-            updateTimerDisplay(false);
             removeAllCardsFromTable();
         }
         announceWinners();
@@ -95,7 +156,6 @@ public class Dealer implements Runnable {
 
         while (!terminate && System.currentTimeMillis() < reshuffleTime) {
             sleepUntilWokenOrTimeout();
-            updateTimerDisplay(false);
             removeCardsFromTable();
             placeCardsOnTable();
         }
@@ -106,16 +166,21 @@ public class Dealer implements Runnable {
      */
     public void terminate() {
         // TODO implement
-        synchronized(Dealer.lockGame){
+        lockGame.lock();
+        try{
             for(int i = players.length - 1; i >= 0; i--){
                 players[i].terminate();
                 try{
-                    lockGame.wait(); //terminate every player reversed from their creation
+                    playerStep.await(); //terminate every player reversed from their creation
                 }catch (InterruptedException e){}
             }
-        }        
+        }finally{
+            lockGame.unlock();
+        }
+        scheduler.shutdownNow(); //the players canceled their tasks, drop anything still waiting and end the timer thread
         terminate = true; //get out of the "should finish" while loop
-        Thread.currentThread().interrupt(); //this is for the dealer-make him stop
+        if(dealerThread != null)
+            dealerThread.interrupt(); //this is for the dealer-make him stop waiting for sets
     }
 
     /**
@@ -124,30 +189,56 @@ public class Dealer implements Runnable {
      * @return true iff the game should be finished.
      */
     private boolean shouldFinish() {
-        return terminate || env.util.findSets(deck, 1).size() == 0;
+        return terminate || remainingSets == 0;
+    }
+
+    /**
+     * Called by a player that has placed a token on every card of a set, to have the dealer check it.
+     *
+     * @param claim - the claimed set.
+     */
+    void claimSet(Claim claim) {
+        claims.add(claim);
     }
 
     /**
      * Checks if any cards should be removed from the table (a player has created a legal set) and removes them.
      */
-    private void removeCardsFromTable() {
+    void removeCardsFromTable() {
         // TODO implement
-        isBusy = true; //dealer is working->players cant do nothing
-        if(wakeByPlayer != -1){ //means that wakeByPlayer = some player.id
-            int[] cards = players[wakeByPlayer].getCurrSet(); //get its set 
-            for(Integer card : cards){
-                int slot = table.cardToSlot(card);
-                for(int i = 0; i < players.length; i++){
-                    if(table.slotToTokens[slot][i]){
-                        table.removeToken(i, slot);
-                        players[i].removeToken(slot); //remove all tokens(his and others) from the places that we need to remove a card of a set
-                    }
-                }                            
-                table.removeCard(slot);
+        claims.drainTo(checkedClaims); //check every claim that is waiting, in one pass
+        checkedClaims.sort(Comparator.comparingLong(claim -> claim.time)); //first come first served
+        for(Claim claim : checkedClaims){
+            if(!isOnTable(claim)) //an earlier claim took some of its cards, nothing to check
+                continue;
+            if(!env.util.testSet(claim.cards)){
+                players[claim.player].toPunish = true;
+                continue;
+            }
+            players[claim.player].toPoint = true;
+            table.removeCards(claim.slots); //in one batch, with all the tokens (his and others) on them, the players see it by themselves
+            for(int card : claim.cards){
                 deck.remove(card); //remove it also from the deck because a set is not coming back once it was found
+                cardsInGame.clear(card);
+                remainingSets -= env.util.countSetsContaining(card, cardsInGame); //the sets this card was part of are gone too
             }
         }
-        isBusy = false; //players can procceed playing
+    }
+
+    //true iff none of the slots of the claim changed since the player saw them (so the cards are still there)
+    private boolean isOnTable(Claim claim) {
+        for(int i = 0; i < claim.slots.length; i++){
+            if(table.slotVersion(claim.slots[i]) != claim.versions[i])
+                return false;
+        }
+        return true;
+    }
+
+    //tells the players of the checked claims that their claims were checked, so they can go on playing
+    private void answerClaims() {
+        for(Claim claim : checkedClaims)
+            players[claim.player].claimChecked();
+        checkedClaims.clear();
     }
 
     /**
@@ -155,25 +246,19 @@ public class Dealer implements Runnable {
      */
     private void placeCardsOnTable() {
         // TODO implement
-        isBusy = true;
-            boolean reset = false; //if we need to update the timer to the initial time
-            int slot = 0;           
-            while(slot < env.config.tableSize & deck.size() != 0){
-                if (table.slotToCard[slot] == null){ //put cards only where is there are no cards
-                    reset = true;
-                    Integer card = deck.remove((int)(Math.random()*deck.size()));//this is for the card shuffle,take some card randomly from the deck is like a shuffle
-                    table.placeCard(card,slot);
+            int[] slots = new int[env.config.tableSize];
+            int[] cards = new int[env.config.tableSize];
+            int count = 0;
+            for(int slot = 0; slot < env.config.tableSize & deck.size() != 0; slot++){
+                if (table.slotToCard(slot) == Table.NONE){ //put cards only where is there are no cards
+                    slots[count] = slot;
+                    cards[count++] = deck.draw();//this is for the card shuffle,take some card randomly from the deck is like a shuffle
                 }
-                slot++;
             }
+            boolean reset = count > 0; //if we need to update the timer to the initial time
+            table.placeCards(Arrays.copyOf(cards, count), Arrays.copyOf(slots, count)); //all the new cards in one batch
             updateTimerDisplay(reset);  //update timer to start playing
-            if(wakeByPlayer != -1){ //if someone made set, the other players were waiting for the checking, then we can wake them up
-                synchronized(lockGame){
-                    lockGame.notifyAll();
-                }        
-                wakeByPlayer = -1;
-            }
-        isBusy = false;
+            answerClaims(); //the players that made a set were waiting for the new cards
     }
 
     /**
@@ -181,35 +266,28 @@ public class Dealer implements Runnable {
      */
     private void sleepUntilWokenOrTimeout() {
         // TODO implement
-        while(reshuffleTime - System.currentTimeMillis() > 0 & wakeByPlayer == -1){ //while the time to shuffle isn't over and no one made a set
-            if(reshuffleTime - System.currentTimeMillis() > env.config.turnTimeoutWarningMillis) 
-                try{
-                        Thread.sleep(1000); //sleep for a second and every second
-                }catch (InterruptedException e){}
-            else{
-                try{
-                    Thread.sleep(100); //sleep a little bit less because we want to show the seconds in a decimal way and this better for the displaying
+        long timeLeft = reshuffleTime - System.currentTimeMillis();
+        while(timeLeft > 0 & checkedClaims.isEmpty() & !terminate){ //while the time to shuffle isn't over and no one made a set
+            try{ //the ui counts down by itself, so wait until the reshuffle time, but a set wakes us at once
+                Claim claim = claims.poll(timeLeft, TimeUnit.MILLISECONDS);
+                if(claim != null)
+                    checkedClaims.add(claim);
             }catch (InterruptedException e){}
-            }
-            updateTimerDisplay(false);         //update timer every second or every milisecond when the warning is need to be shown        
+            timeLeft = reshuffleTime - System.currentTimeMillis();
         }
     }
 
 
     /**
-     * Reset and/or update the countdown and the countdown display.
+     * Reset the countdown from the time the new cards are shown and hand the new deadline to the display, which
+     * counts down to it by itself.
      */
     private void updateTimerDisplay(boolean reset) {
         // TODO implement
         if(reset){ //update the timer to the initial time and a little bit for the ui can be display better
-            reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis + 800;
-            env.ui.setCountdown(env.config.turnTimeoutMillis, false);
-        }
-        else if(reshuffleTime - System.currentTimeMillis() > env.config.turnTimeoutWarningMillis){
-            env.ui.setCountdown(reshuffleTime - System.currentTimeMillis(), false);//set the color to be black (not a warning time)
-        }
-        else if(reshuffleTime - System.currentTimeMillis() >= 0){
-            env.ui.setCountdown(reshuffleTime - System.currentTimeMillis(), true); //set the color to be red (warning time)
+            long shown = Math.max(System.currentTimeMillis(), env.ui.cardsShownBy()); //the ui may still be revealing them
+            reshuffleTime = shown + env.config.turnTimeoutMillis + 800;
+            env.ui.setCountdownDeadline(reshuffleTime, env.config.turnTimeoutWarningMillis);
         }
     }
    
@@ -218,23 +296,20 @@ public class Dealer implements Runnable {
      */
     private void removeAllCardsFromTable() {
         // TODO implement
-        isBusy = true;
         env.ui.setCountdown(0, false);                 
-        table.resetSlotToTokens(); //reset the tokens on the table
-        env.ui.removeTokens(); //reset the tokens on the table in the display too
-        for (int slot = 0; slot < table.slotToCard.length; slot++){
-            if (table.slotToCard[slot] != null){
-                deck.add(table.slotToCard[slot]); //here we need to remove a card from table and put it back to the deck because it was removed from the timer cause and for a set cause
-                table.removeCard(slot);
+        table.resetSlotToTokens(); //all the tokens at once, so removing the cards below has none left to clear
+        int[] slots = new int[env.config.tableSize];
+        int count = 0;
+        for (int slot = 0; slot < env.config.tableSize; slot++){
+            int card = table.slotToCard(slot);
+            if (card != Table.NONE){
+                deck.add(card); //here we need to remove a card from table and put it back to the deck because it was removed from the timer cause and for a set cause
+                slots[count++] = slot;
             }
         } 
-        for(Player player : players){
-            player.resetcurrSet(); //reset all chosen places for every player
-        }
-        isBusy = false;
-        synchronized(canAnnounce){
-            canAnnounce.notifyAll();
-        }
+        table.removeCards(Arrays.copyOf(slots, count)); //all in one batch, the players drop their tokens from their sets by themselves
+        claims.drainTo(checkedClaims); //the cards of these claims went back to the deck
+        answerClaims();
     }
 
     /**
@@ -242,13 +317,6 @@ public class Dealer implements Runnable {
      */
     private void announceWinners() {
         // TODO implement
-        synchronized(canAnnounce){
-            if(isBusy){
-                try{
-                    canAnnounce.wait();
-                }catch (InterruptedException e){}
-            }
-        }
         int highScore = 0;
         LinkedList<Player> winner = new LinkedList<Player>();
         for (int i = 0; i < players.length; i++){
@@ -280,4 +348,4 @@ public class Dealer implements Runnable {
         return winnerA;
     }
 
-}
\ No newline at end of file
+}
\ No newline at end of file
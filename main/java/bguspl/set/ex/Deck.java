@@ -0,0 +1,82 @@
+package bguspl.set.ex;
+
+import java.util.Random;
+
+/**
+ * This class holds the card ids left in the dealer's deck, in an int array. A removed card is swapped with the
+ * last card, and every card knows its index, so drawing, removing and returning a card are all O(1).
+ */
+class Deck {
+
+    /**
+     * The cards in the deck (cards[0..size)), and the index of every card in cards (-1 if not in the deck).
+     */
+    private final int[] cards;
+    private final int[] cardToIndex;
+    private int size;
+
+    /**
+     * The source of randomness for drawing cards.
+     */
+    private final Random random;
+
+    /**
+     * @param deckSize - the number of cards in the game, all of them start in the deck.
+     * @param random   - the source of randomness for drawing cards.
+     */
+    Deck(int deckSize, Random random) {
+        cards = new int[deckSize];
+        cardToIndex = new int[deckSize];
+        for (int card = 0; card < deckSize; card++) {
+            cards[card] = card;
+            cardToIndex[card] = card;
+        }
+        size = deckSize;
+        this.random = random;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(int card) {
+        return cardToIndex[card] != -1;
+    }
+
+    /**
+     * Removes a random card from the deck.
+     * @return - the card removed.
+     *
+     * @pre - size() > 0
+     */
+    int draw() {
+        int card = cards[random.nextInt(size)];
+        remove(card);
+        return card;
+    }
+
+    /**
+     * Removes the card from the deck, if it is there.
+     * @param card - the card to remove.
+     */
+    void remove(int card) {
+        int index = cardToIndex[card];
+        if (index == -1)
+            return;
+        int last = cards[--size]; //move the last card to the place of the removed one
+        cards[index] = last;
+        cardToIndex[last] = index;
+        cardToIndex[card] = -1;
+    }
+
+    /**
+     * Returns the card to the deck, if it is not there already.
+     * @param card - the card to return.
+     */
+    void add(int card) {
+        if (contains(card))
+            return;
+        cards[size] = card;
+        cardToIndex[card] = size++;
+    }
+}
@@ -7,6 +7,12 @@ import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import java.util.stream.Collectors;
 
 import bguspl.set.Env;
@@ -37,12 +43,22 @@ public class Player implements Runnable {
     /**
      * The thread representing the current player.
      */
-    private Thread playerThread;
+    private volatile Thread playerThread;
 
     /**
-     * The thread of the AI (computer) player (an additional thread used to generate key presses).
+     * The timer of the game, owned by the dealer.
      */
-    private Thread aiThread;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * The next key press of the AI (computer) player on the timer (null for a human player).
+     */
+    private volatile ScheduledFuture<?> aiKeyPress;
+
+    /**
+     * How the AI (computer) player chooses its keys (null for a human player).
+     */
+    private final ComputerStrategy strategy;
 
     /**
      * True iff the player is human (not a computer player).
@@ -61,9 +77,17 @@ public class Player implements Runnable {
 
     //////
     /**
-     * The current set of tokens placed on the table (values = slots)
+     * The slots the player has tokens on (the first selected of them), and the same slots as a bitmask. Reused for
+     * the whole game, so handling a key press never allocates.
+     */
+    private final int[] selection;
+    private int selected;
+    private final long[] selectedSlots;
+
+    /**
+     * The claim the player sends the dealer when it completes a set, reused for every set.
      */
-    private LinkedList<Integer> currSet;
+    private final Claim claim;
 
     /**
      * The dealer
@@ -71,16 +95,28 @@ public class Player implements Runnable {
     private Dealer dealer;  
     
     /**
-     * locking object for synchronization
+     * The key presses (slots) waiting for the player thread, and the number of key presses that were ignored because
+     * the player was frozen or waiting for the dealer, or dropped because the queue was full.
      */
-    public Object lockPlayer;
-    public Object lockAI;
+    private final ActionQueue actions;
+    private final AtomicInteger ignoredKeys = new AtomicInteger();
+    private final AtomicInteger droppedKeys = new AtomicInteger();
 
     /**
      * flags representing the state of the player
      */
     public volatile boolean toPunish = false;
     public volatile boolean toPoint = false;
+    public volatile boolean waitingForDealer = false; //a set of this player is waiting to be checked by the dealer
+    private volatile int answeredClaims = 0; //the claims of this player the dealer answered, only the dealer counts
+
+    /**
+     * The time (System.currentTimeMillis) until which the player is frozen after a point or a penalty. Key presses
+     * are ignored until then, and the timer (not the player thread) counts it down on the display, by the update
+     * scheduled next (null if none).
+     */
+    private volatile long frozenUntil;
+    private volatile ScheduledFuture<?> freezeUpdate;
 
     /**
      * The class constructor.
@@ -97,12 +133,20 @@ public class Player implements Runnable {
         this.id = id;
         this.human = human;
         /////
-        currSet = new LinkedList<Integer>();
+        selection = new int[env.config.featureSize];
+        selectedSlots = new long[(env.config.tableSize + Long.SIZE - 1) / Long.SIZE];
+        claim = new Claim(id, env.config.featureSize);
         this.dealer = dealer;
+        scheduler = dealer.scheduler();
         this.terminate = false;
         this.score = 0;
-        lockPlayer = new Object();
-        lockAI = new Object();
+        actions = new ActionQueue(env.config.featureSize);
+        if (human)
+            strategy = null;
+        else if ("Solver".equalsIgnoreCase(env.config.computerStrategy))
+            strategy = new SolverStrategy(env, table, this);
+        else
+            strategy = new RandomStrategy(env);
     }
 
     /**
@@ -112,121 +156,165 @@ public class Player implements Runnable {
     public void run() {  
         playerThread = Thread.currentThread();             
         env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
-        if (!human){ //create AI under synchronized and wait, to control the order the threds are created
-            synchronized(lockAI){
-                createArtificialIntelligence();            
-                try{
-                    lockAI.wait();
-                }catch(InterruptedException e){}       
-            }
+        if (!human){
+            createArtificialIntelligence();
         }
-        synchronized(Dealer.lockGame){ //control the order the threds are created
-            Dealer.lockGame.notifyAll();
+        Dealer.lockGame.lock(); //control the order the threds are created
+        try{
+            Dealer.playerStep.signalAll();
+        }finally{
+            Dealer.lockGame.unlock();
         }
         while (!terminate) {
             // TODO implement main player loop
-            if (!human){
-                synchronized(lockAI){
-                        lockAI.notifyAll(); //every loop the AI thread waits until a new loop begins, and wakes up by notify
-                }
-            }
-            else{
-                synchronized(lockPlayer){
-                    try{
-                        lockPlayer.wait(); //let go of lockPlayer, so keyPress can lock it
-                    }catch (InterruptedException e){} // catch lockPlayer again after keyPress "let go" and notify
-                }
-            }
+            handleKeys();
             if(toPunish){
                 penalty();
             }
-            if(toPoint){
-                synchronized(Dealer.lockGame){
-                    try{
-                        Dealer.lockGame.wait(); //let go of Dealer.lockGame, so dealer can remove and put cards, until all crds are placed - then notified
-                    }catch (InterruptedException e){}
-                }            
+            if(toPoint){ //the dealer already replaced the cards of the set
                 point();
             }    
+            if(actions.isEmpty() & !toPunish & !toPoint & !terminate){
+                LockSupport.park(this); //until a key is pressed or the dealer checks a set of this player
+            }
         }
-        if (!human) try { aiThread.join(); } catch (InterruptedException ignored) {}
+        if (ignoredKeys.get() + droppedKeys.get() > 0)
+            env.logger.info("player " + id + " ignored " + ignoredKeys.get() + " key presses while frozen and dropped " + droppedKeys.get() + " on a full queue.");
         env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
-        synchronized(Dealer.lockGame){ //control the order the threds are terminated
-            Dealer.lockGame.notifyAll();
+        Dealer.lockGame.lock(); //control the order the threds are terminated
+        try{
+            Dealer.playerStep.signalAll();
+        }finally{
+            Dealer.lockGame.unlock();
         }
     }
 
     /**
-     * Creates an additional thread for an AI (computer) player. The main loop of this thread repeatedly generates
-     * key presses. If the queue of key presses is full, the thread waits until it is not full.
+     * Starts the AI (computer) player: key presses at the configured rate, each one scheduled on the timer of the
+     * game, so the AI needs no thread of its own and uses no cpu between presses.
      */
     private void createArtificialIntelligence() {
         // note: this is a very, very smart AI (!)
-        aiThread = new Thread(() -> {                     
-            synchronized(lockAI){ //control the order the threds are created
-                lockAI.notifyAll();
-            }          
-            env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
-            while (!terminate) {
-                // TODO implement player key press simulator
-                int slot = (int)(Math.random()*env.config.tableSize);
-                keyPressed(slot);
-                synchronized(lockAI){
-                    try{
-                        lockAI.wait();//after offering a randon slot to keyPress, wait until the players loop resets(wether the player needs to punished\ recine a point\ none)
-                    }catch(InterruptedException e){}       
-                }
-            }
-            env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
-        }, "computer-" + id); 
-        aiThread.start();                 
+        if (env.config.computerKeyPressesPerSecond > 0)
+            scheduleKeyPress();
+    }
+
+    //schedules the next key press of the AI, a fixed time after the last one or a random (Poisson process) time
+    private void scheduleKeyPress() {
+        if (terminate)
+            return;
+        double meanMicros = 1000000 / env.config.computerKeyPressesPerSecond;
+        double delayMicros = env.config.computerPoissonKeyPresses ? -Math.log(1 - ThreadLocalRandom.current().nextDouble()) * meanMicros : meanMicros;
+        aiKeyPress = scheduler.schedule(this::pressKey, (long) delayMicros, TimeUnit.MICROSECONDS);
     }
+
+    //a key press of the AI, as its strategy chooses, on the timer thread
+    private void pressKey() {
+        // TODO implement player key press simulator
+        int slot = strategy.nextKey();
+        if (slot != -1)
+            keyPressed(slot);
+        scheduleKeyPress();
+    }
+
     /**
      * Called when the game should be terminated.
      */
     public void terminate() {
         // TODO implement
         terminate = true;
-        if (!human){
-            aiThread.interrupt();
-            try { aiThread.join(); } catch (InterruptedException ignored) {}
-        }        
+        cancel(aiKeyPress); //no more key presses of the AI
+        cancel(freezeUpdate); //nor freeze updates, so the dealer can shut the timer down
         playerThread.interrupt();
     }
 
     /**
-     * This method is called when a key is pressed. and put\remove a token for me 
+     * This method is called when a key is pressed. It only queues the key for the player thread, so it never blocks
+     * the input thread (the UI or the AI). Keys pressed while the ui is still revealing cards are ignored.
      *
      * @param slot - the slot corresponding to the key pressed.
      */
     public void keyPressed(int slot) {
         // TODO implement 
-        if(!toPoint & !toPunish & !Dealer.isBusy & Dealer.wakeByPlayer == -1){ //the player can use keyPressed only when it is not in timeout, and thedealer isn't removing\placing cards     
-            if (table.slotToCard[slot] != null){ //there is a card in that slot
-                if (currSet.contains(slot)){ //a token is already placed on that slot
-                    removeToken(slot);
-                    table.removeToken(id, slot);
-                }
-                else if (currSet.size() < env.config.featureSize) { //no more than (setSize), 3 for magic number
-                    currSet.add(slot); 
-                    table.placeToken(id, slot);
-                    if (currSet.size() == env.config.featureSize){ //set needs to be checked
-                        if(env.util.testSet(getCurrSet())){
-                            Dealer.wakeByPlayer = id;
-                            toPoint = true; 
-                        }
-                        else{
-                            toPunish = true;
-                        }
-                        synchronized(lockPlayer){
-                            lockPlayer.notifyAll(); //continue running loop
-                        }  
-                    }
-                }
-            }
+        if(toPoint | toPunish | waitingForDealer | isFrozen() | env.ui.cardsShownBy() > System.currentTimeMillis()){ //the player can't play when it is in timeout, the dealer is checking his set or the cards are not shown yet
+            ignoredKeys.incrementAndGet();
+        }
+        else if(!actions.offer(slot)){ //no more than (setSize) keys are waiting for the player thread
+            droppedKeys.incrementAndGet();
         }
+        LockSupport.unpark(playerThread);
     }       
 
+    //handles every key pressed since the last loop
+    void handleKeys() {
+        int slot;
+        while((slot = actions.poll()) != -1){
+            handleKey(slot);
+        }
+    }
+
+    //put\remove a token for me, in the player thread
+    private void handleKey(int slot) {
+        if(!toPoint & !toPunish & !waitingForDealer & !isFrozen()){ //the player can play only when it is not in timeout or the dealer is checking his set
+            syncSelection();
+            if (isSelected(slot)){ //a token is already placed on that slot
+                unselect(slot);
+                table.removeToken(id, slot);
+            }
+            else if (selected < selection.length && table.placeToken(id, slot)) { //no more than (setSize), and only on a card
+                select(slot);
+                if (selected == selection.length) //set needs to be checked by the dealer
+                    claimSet();
+            }
+        }
+        else{
+            ignoredKeys.incrementAndGet();
+        }
+    }
+
+    //fills the claim with the selected slots, and the cards and versions of the slots, and sends it to the dealer
+    private void claimSet() {
+        for (int i = 0; i < selected; i++) {
+            long read = table.readSlot(selection[i]); //the card together with the version of the slot it was in
+            claim.slots[i] = selection[i];
+            claim.cards[i] = (int) read;
+            claim.versions[i] = (int) (read >>> 32);
+        }
+        syncSelection(); //if the tokens are still there, the cards we read are the ones they were placed on
+        if (selected == selection.length) {
+            claim.time = System.nanoTime();
+            waitingForDealer = true; //until the dealer checks the set (then claimChecked is called)
+            dealer.claimSet(claim); //stale if any of the slots changes
+        }
+    }
+
+    //drops from the selection the slots whose tokens the dealer removed (with their cards), only the player thread changes the selection
+    private void syncSelection() {
+        for (int i = selected - 1; i >= 0; i--)
+            if (!table.hasToken(id, selection[i]))
+                unselect(selection[i]);
+    }
+
+    private boolean isSelected(int slot) {
+        return (selectedSlots[slot / Long.SIZE] & 1L << slot) != 0;
+    }
+
+    private void select(int slot) {
+        selection[selected++] = slot;
+        selectedSlots[slot / Long.SIZE] |= 1L << slot;
+    }
+
+    //removes the slot from the selection, by moving the last selected slot to its place
+    private void unselect(int slot) {
+        selectedSlots[slot / Long.SIZE] &= ~(1L << slot);
+        for (int i = 0; i < selected; i++) {
+            if (selection[i] == slot) {
+                selection[i] = selection[--selected];
+                return;
+            }
+        }
+    }
+
     /**
      * Award a point to a player and perform other related actions.
      *
@@ -238,15 +326,7 @@ public class Player implements Runnable {
         int ignored = table.countCards(); // this part is just for demonstration in the unit tests
             env.ui.setScore(id, ++score);
         ////        
-        env.ui.setFreeze(id,env.config.pointFreezeMillis);
-        long freezeTimeoutTime = System.currentTimeMillis() + env.config.pointFreezeMillis;
-        while (freezeTimeoutTime - System.currentTimeMillis() > 0){ //for pointFreezeMillis, update timer every second  
-            env.ui.setFreeze(id,freezeTimeoutTime - System.currentTimeMillis());           
-            try{
-                Thread.sleep(980);
-            }catch (InterruptedException e){}                                       
-        }            
-        env.ui.setFreeze(id,0);
+        freeze(env.config.pointFreezeMillis);
         toPoint = false; //reset toPoint value
     }
 
@@ -255,56 +335,63 @@ public class Player implements Runnable {
      */
     public void penalty() {
         // TODO implement
-        env.ui.setFreeze(id,env.config.penaltyFreezeMillis);
-        long freezeTimeoutTime = System.currentTimeMillis() + env.config.penaltyFreezeMillis;
-        
-        while (freezeTimeoutTime - System.currentTimeMillis() > 0){ //for penaltyFreezeMillis, update timer every second  
-
-                env.ui.setFreeze(id,freezeTimeoutTime - System.currentTimeMillis());         
-                try{
-                    Thread.sleep(980);
-                }catch (InterruptedException e){}                                       
-            }            
-        env.ui.setFreeze(id,0);
+        freeze(env.config.penaltyFreezeMillis);
         toPunish = false; //reset toPunish value
     }
 
-    public int score() {
-        return score;
+    //freezes the player for the given time, without keeping the player thread busy
+    private void freeze(long millis) {
+        long until = System.currentTimeMillis() + millis;
+        frozenUntil = until;
+        env.ui.setFreeze(id, millis);
+        if (millis > 0)
+            freezeUpdate = scheduler.schedule(() -> updateFreeze(until), Math.min(millis, 1000), TimeUnit.MILLISECONDS);
     }
 
-    /////
-    //returns an array representing the cards that the player has tokens on
-    public int[] getCurrSet() {
-        int[] currSetOutput = new int[currSet.size()];
-        Iterator<Integer> iterator = currSet.iterator();
-        int i = 0;   
-        while (iterator.hasNext()) {
-            int slot = iterator.next();
-            currSetOutput[i] = table.slotToCard[slot]; // translate slot to card and add to the array
-            i++;
+    //shows the time left to the freeze every second until it is over, on the timer thread
+    private void updateFreeze(long until) {
+        if (until != frozenUntil | terminate) //a newer freeze took over, or the game is over
+            return;
+        long left = until - System.currentTimeMillis();
+        if (left > 0) {
+            env.ui.setFreeze(id, left);
+            freezeUpdate = scheduler.schedule(() -> updateFreeze(until), Math.min(left, 1000), TimeUnit.MILLISECONDS);
+        }
+        else {
+            env.ui.setFreeze(id, 0);
+            LockSupport.unpark(playerThread); //the player can play again
         }
-        return currSetOutput;
     }
 
+    //cancels a task of this player on the timer, if there is one
+    private static void cancel(ScheduledFuture<?> task) {
+        if (task != null)
+            task.cancel(false);
+    }
+
+    //true iff the player is frozen after a point or a penalty
+    private boolean isFrozen() {
+        return System.currentTimeMillis() < frozenUntil;
+    }
+
+    public int score() {
+        return score;
+    }
+
+    /////
     public int getId(){
         return id;
     }
 
-    public void resetcurrSet(){
-        currSet = new LinkedList<Integer>();
+    //the number of claims of this player the dealer answered so far
+    int answeredClaims() {
+        return answeredClaims;
     }
 
-    //removes a token from a specific slot, by removing it from the currSet field
-    public void removeToken(int slot){
-        Iterator<Integer> iterator = currSet.iterator();
-        boolean found = false;
-        while(!found & iterator.hasNext()){
-            int element = iterator.next();
-            if(element == slot){
-                iterator.remove();
-                found = true;
-            } 
-        }     
+    //called by the dealer after checking a set of this player (and setting toPoint or toPunish if needed)
+    public void claimChecked(){
+        answeredClaims++;
+        waitingForDealer = false;
+        LockSupport.unpark(playerThread); //continue running loop
     }
-}
\ No newline at end of file
+}
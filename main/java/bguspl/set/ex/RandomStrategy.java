@@ -0,0 +1,25 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import bguspl.set.Env;
+
+/**
+ * A computer player strategy that presses random slots.
+ */
+class RandomStrategy implements ComputerStrategy {
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    RandomStrategy(Env env) {
+        this.env = env;
+    }
+
+    @Override
+    public int nextKey() {
+        return ThreadLocalRandom.current().nextInt(env.config.tableSize);
+    }
+}
@@ -0,0 +1,129 @@
+package bguspl.set.ex;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import bguspl.set.Env;
+
+/**
+ * A computer player strategy that takes a random legal set from the table's set index, waits for the reaction time and
+ * then presses its slots. With the configured error rate, one of the slots is replaced by a random other card, so the
+ * player is sometimes penalized like a human.
+ */
+class SolverStrategy implements ComputerStrategy {
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * Game entities.
+     */
+    private final Table table;
+    private final Player player;
+
+    /**
+     * The slots the player is going to press and the cards that were in them when they were chosen (valid iff
+     * planned), the time (System.nanoTime) from which the player reacts to them, and the number of claims of the
+     * player the dealer had answered then (once another one is answered, the plan was claimed and is done).
+     */
+    private final int[] planSlots;
+    private final int[] planCards;
+    private boolean planned;
+    private long reactAt;
+    private int answeredClaims;
+
+    /**
+     * The source of randomness for the sets chosen and for the mistakes.
+     */
+    private final Random random;
+
+    SolverStrategy(Env env, Table table, Player player) {
+        this(env, table, player, new Random());
+    }
+
+    SolverStrategy(Env env, Table table, Player player, Random random) {
+        this.env = env;
+        this.table = table;
+        this.player = player;
+        this.random = random;
+        planSlots = new int[env.config.featureSize];
+        planCards = new int[env.config.featureSize];
+    }
+
+    @Override
+    public int nextKey() {
+        if (planned && !isOnTable())
+            planned = false; //someone took the cards (or the dealer reshuffled), look again
+        if (!planned && !plan())
+            return -1; //no set on the table right now
+        if (System.nanoTime() < reactAt)
+            return -1; //still "looking" at the table
+
+        for (int slot = 0; slot < env.config.tableSize; slot++) //first remove the tokens that are not in the plan
+            if (table.hasToken(player.id, slot) && !isPlanned(slot))
+                return slot;
+        for (int slot : planSlots)
+            if (!table.hasToken(player.id, slot))
+                return slot;
+        if (player.answeredClaims() != answeredClaims)
+            planned = false; //the dealer already answered the claim (a wrong set stays on the table), look again
+        return -1;
+    }
+
+    //chooses the slots to press from a random set in the table's index, true iff there is one
+    private boolean plan() {
+        int[] set = null;
+        int count = 0;
+        for (Iterator<int[]> sets = table.sets(); sets.hasNext(); ) { //every set with the same chance, in one pass
+            int[] next = sets.next();
+            if (random.nextInt(++count) == 0)
+                set = next;
+        }
+        if (set == null)
+            return false;
+        for (int i = 0; i < set.length; i++) {
+            planCards[i] = set[i];
+            planSlots[i] = table.cardToSlot(set[i]);
+            if (planSlots[i] == Table.NONE)
+                return false; //the dealer is changing the table right now
+        }
+        if (random.nextDouble() < env.config.computerErrorRate)
+            makeMistake();
+        planned = true;
+        answeredClaims = player.answeredClaims();
+        reactAt = System.nanoTime() + env.config.computerReactionMillis * 1000000;
+        return true;
+    }
+
+    //replaces a random card of the plan by a random other card on the table, if there is one
+    private void makeMistake() {
+        int mistake = Table.NONE;
+        int count = 0;
+        for (int slot = 0; slot < env.config.tableSize; slot++) //every other card with the same chance, in one pass
+            if (table.slotToCard(slot) != Table.NONE && !isPlanned(slot) && random.nextInt(++count) == 0)
+                mistake = slot;
+        int card = mistake == Table.NONE ? Table.NONE : table.slotToCard(mistake);
+        if (card == Table.NONE)
+            return; //only the set is on the table (or the dealer just took the card)
+        int i = random.nextInt(planSlots.length);
+        planSlots[i] = mistake;
+        planCards[i] = card;
+    }
+
+    //true iff the cards of the plan are still in their slots
+    private boolean isOnTable() {
+        for (int i = 0; i < planSlots.length; i++)
+            if (table.slotToCard(planSlots[i]) != planCards[i])
+                return false;
+        return true;
+    }
+
+    private boolean isPlanned(int slot) {
+        for (int planSlot : planSlots)
+            if (planSlot == slot)
+                return true;
+        return false;
+    }
+}
@@ -1,8 +1,14 @@
 package bguspl.set.ex;
 
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
-import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 import bguspl.set.Env;
@@ -10,7 +16,7 @@ import bguspl.set.Env;
 /**
  * This class contains the data that is visible to the player.
  *
- * @inv slotToCard[x] == y iff cardToSlot[y] == x
+ * @inv slotToCard[x] == y iff cardToSlot[y] == x (when slot x is not being changed, see readSlot)
  */
 public class Table {
 
@@ -20,37 +26,84 @@ public class Table {
     private final Env env;
 
     /**
-     * Mapping between a slot and the card placed in it (null if none).
+     * The value of slotToCard and cardToSlot for an empty slot or a card that is not on the table.
      */
-    protected final Integer[] slotToCard; // card per slot (if any)
+    public static final int NONE = -1;
 
     /**
-     * Mapping between a card and the slot it is in (null if none).
+     * Mapping between a slot and the card placed in it (NONE if none).
      */
-    protected final Integer[] cardToSlot; // slot per card (if any)
+    protected final AtomicIntegerArray slotToCard; // card per slot (if any)
+
+    /**
+     * Mapping between a card and the slot it is in (NONE if none).
+     */
+    protected final AtomicIntegerArray cardToSlot; // slot per card (if any)
+
+    /**
+     * The version of every slot, bumped twice whenever its card changes: odd while the dealer changes the slot, even
+     * when it is stable. Readers never lock, they read the version before and after the card (see readSlot).
+     */
+    private final AtomicIntegerArray slotVersions;
 
     //////
      /**
-     * Mapping between a slot and the player tha has a token on placed it (false if none).
+     * The players that have a token on each slot, as bitmasks of playerWords words per slot (bit p of word w of a
+     * slot is set iff player 64 * w + p has a token on it). A slot whose epoch is not the current one has no tokens.
      */
-    protected boolean[][] slotToTokens; 
+    protected final AtomicLongArray slotToTokens;
+    private final int playerWords;
 
+    /**
+     * The slots each player has placed tokens on, as bitmasks of slotWords words per player. Only the player
+     * changes its own mask, and the dealer never clears it: a bit counts only while the slot still has the token.
+     */
+    private final long[][] playerToSlots;
+    private final int slotWords;
+
+    /**
+     * The current token epoch, and the epoch each slot's tokens were written in. Bumping the epoch removes all
+     * the tokens from the table at once.
+     */
+    private volatile int epoch;
+    private final AtomicIntegerArray slotEpochs;
+
+    /**
+     * One lock per slot, guarding the card in the slot and the tokens on it. The dealer holds only the lock of the
+     * slot it changes, so the players keep placing tokens on the other slots meanwhile. Locks rather than monitors,
+     * so a virtual thread doesn't pin its carrier while it holds one (the ui logs under it).
+     */
+    private final ReentrantLock[] slotLocks;
+
+    /**
+     * The legal sets among the cards currently on the table (sorted card ids), updated by placeCard and removeCard.
+     * Copy-on-write, so readers always iterate over a consistent snapshot while the dealer changes the table.
+     */
+    private final List<int[]> tableSets = new CopyOnWriteArrayList<>();
 
 
     /**
      * Constructor for testing.
      *
      * @param env        - the game environment objects.
-     * @param slotToCard - mapping between a slot and the card placed in it (null if none).
-     * @param cardToSlot - mapping between a card and the slot it is in (null if none).
+     * @param slotToCard - mapping between a slot and the card placed in it (NONE if none).
+     * @param cardToSlot - mapping between a card and the slot it is in (NONE if none).
      */
-    public Table(Env env, Integer[] slotToCard, Integer[] cardToSlot) {
+    public Table(Env env, AtomicIntegerArray slotToCard, AtomicIntegerArray cardToSlot) {
 
         this.env = env;
         this.slotToCard = slotToCard;
         this.cardToSlot = cardToSlot;
         /////
-        slotToTokens = new boolean[env.config.tableSize][env.config.players];
+        playerWords = (env.config.players + Long.SIZE - 1) / Long.SIZE;
+        slotWords = (slotToCard.length() + Long.SIZE - 1) / Long.SIZE;
+        slotToTokens = new AtomicLongArray(slotToCard.length() * playerWords);
+        playerToSlots = new long[env.config.players][slotWords];
+        slotEpochs = new AtomicIntegerArray(slotToCard.length());
+        slotVersions = new AtomicIntegerArray(slotToCard.length());
+        slotLocks = new ReentrantLock[slotToCard.length()];
+        for (int slot = 0; slot < slotLocks.length; slot++)
+            slotLocks[slot] = new ReentrantLock();
     }
 
 
@@ -61,19 +114,25 @@ public class Table {
      */
     public Table(Env env) {
 
-        this(env, new Integer[env.config.tableSize], new Integer[env.config.deckSize]);
+        this(env, emptyArray(env.config.tableSize), emptyArray(env.config.deckSize));
         /////
         //slotToTokens = new boolean[env.config.tableSize][env.config.players];
     }
 
+    //an array of the given length, all NONE
+    static AtomicIntegerArray emptyArray(int length) {
+        int[] array = new int[length];
+        Arrays.fill(array, NONE);
+        return new AtomicIntegerArray(array);
+    }
+
     /**
      * This method prints all possible legal sets of cards that are currently on the table.
      */
     public void hints() {
-        List<Integer> deck = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
-        env.util.findSets(deck, Integer.MAX_VALUE).forEach(set -> {
+        tableSets.forEach(set -> {
             StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
-            List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted().collect(Collectors.toList());
+            List<Integer> slots = Arrays.stream(set).mapToObj(cardToSlot::get).sorted().collect(Collectors.toList());
             int[][] features = env.util.cardsToFeatures(set);
             System.out.println(sb.append("slots: ").append(slots).append(" features: ").append(Arrays.deepToString(features)));
         });
@@ -86,8 +145,8 @@ public class Table {
      */
     public int countCards() {
         int cards = 0;
-        for (Integer card : slotToCard)
-            if (card != null)
+        for (int slot = 0; slot < slotToCard.length(); slot++)
+            if (slotToCard.get(slot) != NONE)
                 ++cards;
         return cards;
     }
@@ -100,32 +159,97 @@ public class Table {
      * @post - the card placed is on the table, in the assigned slot.
      */
     public void placeCard(int card, int slot) {
-        try {
-            Thread.sleep(env.config.tableDelayMillis); //the dealer goes to sleep
-        } catch (InterruptedException ignored) {}
+        placeCards(new int[]{card}, new int[]{slot});
+    }
 
-        cardToSlot[card] = slot;
-        slotToCard[slot] = card;
+    /**
+     * Places several cards on the table at once, holding the locks of all their slots: one update of the set index
+     * and one ui update for the whole batch. The table delay is only shown by the ui, the dealer does not wait.
+     * @param cards - the card ids to place.
+     * @param slots - the slots in which the cards should be placed (cards[i] in slots[i]).
+     *
+     * @post - the cards placed are on the table, in the assigned slots.
+     */
+    public void placeCards(int[] cards, int[] slots) {
+        if (slots.length == 0)
+            return;
+        withSlotLocks(slots, 0, () -> {
+            BitSet replaced = new BitSet(env.config.deckSize);
+            for (int i = 0; i < slots.length; i++) {
+                int slot = slots[i];
+                int old = slotToCard.get(slot);
+                if (old != NONE) {
+                    replaced.set(old);
+                    clearTokens(slot);
+                }
+                slotVersions.incrementAndGet(slot); //odd: the slot is changing
+                if (old != NONE)
+                    cardToSlot.set(old, NONE);
+                cardToSlot.set(cards[i], slot);
+                slotToCard.set(slot, cards[i]);
+                slotVersions.incrementAndGet(slot);
+            }
+            removeSetsWith(replaced);
+            addSetsWith(cards);
 
-        // TODO implement
-        env.ui.placeCard(card, slot);
+            // TODO implement
+            env.ui.placeCards(cards, slots);
+        });
     }
 
     /**
-     * Removes a card from a grid slot on the table.
+     * Removes a card from a grid slot on the table, together with all the tokens placed on it.
      * @param slot - the slot from which to remove the card.
      */
     public void removeCard(int slot) {
-        try {
-            Thread.sleep(env.config.tableDelayMillis);
-        } catch (InterruptedException ignored) {}
+        removeCards(new int[]{slot});
+    }
+
+    /**
+     * Removes the cards from several slots at once, together with all the tokens placed on them, holding the locks
+     * of all the slots: one update of the set index and one ui update for the whole batch.
+     * @param slots - the slots from which to remove the cards (empty slots are skipped).
+     */
+    public void removeCards(int[] slots) {
+        if (slots.length == 0)
+            return;
 
         // TODO implement
-        if(slotToCard[slot] != null) { //there is a card to remove
-            int card = slotToCard[slot];
-            slotToCard[slot] = null;
-            cardToSlot[card] = null;
-            env.ui.removeCard(slot);
+        withSlotLocks(slots, 0, () -> {
+            BitSet removed = new BitSet(env.config.deckSize);
+            int[] emptied = new int[slots.length];
+            int count = 0;
+            for (int slot : slots) {
+                int card = slotToCard.get(slot);
+                if(card != NONE) { //there is a card to remove
+                    clearTokens(slot);
+                    slotVersions.incrementAndGet(slot); //odd: the slot is changing
+                    slotToCard.set(slot, NONE);
+                    cardToSlot.set(card, NONE);
+                    slotVersions.incrementAndGet(slot);
+                    removed.set(card);
+                    emptied[count++] = slot;
+                }
+            }
+            if (count > 0) {
+                removeSetsWith(removed);
+                env.ui.removeCards(Arrays.copyOf(emptied, count));
+            }
+        });
+    }
+
+    //runs the update holding the locks of slots[i..], after the caller took the locks of slots[..i]. Only the dealer
+    //holds more than one slot lock at a time, so the order they are taken in can't deadlock
+    private void withSlotLocks(int[] slots, int i, Runnable update) {
+        if (i == slots.length) {
+            update.run();
+            return;
+        }
+        slotLocks[slots[i]].lock();
+        try {
+            withSlotLocks(slots, i + 1, update);
+        } finally {
+            slotLocks[slots[i]].unlock();
         }
     }
 
@@ -133,11 +257,29 @@ public class Table {
      * Places a player token on a grid slot.
      * @param player - the player the token belongs to.
      * @param slot   - the slot on which to place the token.
+     * @return       - true iff the token was placed (there is a card in the slot, and the tokens were not reset).
      */
-    public void placeToken(int player, int slot) {
+    public boolean placeToken(int player, int slot) {
         // TODO implement
-        slotToTokens[slot][player] = true; //setting theplace in the table of the specific slot with specific player to true
-        env.ui.placeToken(player, slot);
+        slotLocks[slot].lock();
+        try {
+            if (slotToCard.get(slot) == NONE) //the dealer took the card meanwhile
+                return false;
+            int current = renewEpoch(slot);
+            int word = slot * playerWords + player / Long.SIZE;
+            slotToTokens.set(word, slotToTokens.get(word) | 1L << player); //setting the bit of the player in the slot
+            playerToSlots[player][slot / Long.SIZE] |= 1L << slot;
+            env.ui.placeToken(player, slot);
+            if (epoch != current) { //the dealer reset the tokens meanwhile, maybe clearing the ui before this token
+                slotToTokens.set(word, slotToTokens.get(word) & ~(1L << player));
+                playerToSlots[player][slot / Long.SIZE] &= ~(1L << slot);
+                env.ui.removeToken(player, slot);
+                return false;
+            }
+            return true;
+        } finally {
+            slotLocks[slot].unlock();
+        }
     }
 
     /**
@@ -148,23 +290,180 @@ public class Table {
      */
     public boolean removeToken(int player, int slot) {
         // TODO implement
-        boolean removed = slotToTokens[slot][player]; //there actually is a token to remove
-        slotToTokens[slot][player] = false;
-        env.ui.removeToken(player, slot);
-        return removed;
+        slotLocks[slot].lock();
+        try {
+            playerToSlots[player][slot / Long.SIZE] &= ~(1L << slot);
+            boolean removed = hasToken(player, slot); //there actually is a token to remove
+            if (removed) {
+                int word = slot * playerWords + player / Long.SIZE;
+                slotToTokens.set(word, slotToTokens.get(word) & ~(1L << player));
+                env.ui.removeToken(player, slot);
+            }
+            return removed;
+        } finally {
+            slotLocks[slot].unlock();
+        }
+    }
+
+    /**
+     * @param player - the player the token belongs to.
+     * @param slot   - the slot to check.
+     * @return       - true iff the player has a token on the slot (the dealer removes the tokens with the card).
+     */
+    public boolean hasToken(int player, int slot) {
+        return (tokens(slot, player / Long.SIZE) & 1L << player) != 0;
+    }
+
+    /**
+     * @param slot - the slot to check.
+     * @param word - which 64 players to check (players 64 * word to 64 * word + 63).
+     * @return     - the players of the word that have a token on the slot, as a bitmask.
+     */
+    public long tokens(int slot, int word) {
+        int slotEpoch = slotEpochs.get(slot);
+        long tokens = slotToTokens.get(slot * playerWords + word);
+        return slotEpoch == epoch ? tokens : 0;
+    }
+
+    /**
+     * @param player - the player to check.
+     * @param word   - which 64 slots to check (slots 64 * word to 64 * word + 63).
+     * @return       - the slots of the word on which the player has a token, as a bitmask.
+     */
+    public long tokenSlots(int player, int word) {
+        long slots = playerToSlots[player][word];
+        for (long rest = slots; rest != 0; rest &= rest - 1) { //drop the slots the dealer cleared meanwhile
+            int slot = word * Long.SIZE + Long.numberOfTrailingZeros(rest);
+            if (!hasToken(player, slot))
+                slots &= ~(1L << slot);
+        }
+        return slots;
+    }
+
+    //removes the tokens of all the players from the slot, the caller holds the slot lock
+    private void clearTokens(int slot) {
+        if (slotEpochs.get(slot) != epoch)
+            return; //no tokens were placed on it since the last reset
+        boolean removed = false;
+        for (int word = slot * playerWords; word < (slot + 1) * playerWords; word++) {
+            removed |= slotToTokens.get(word) != 0;
+            slotToTokens.set(word, 0);
+        }
+        if (removed)
+            env.ui.removeTokens(slot);
+    }
+
+    //makes the tokens of the slot belong to the current epoch (empty if they were placed before the last reset) and
+    //returns that epoch, the caller holds the slot lock
+    private int renewEpoch(int slot) {
+        int current = epoch;
+        if (slotEpochs.get(slot) != current) {
+            for (int word = slot * playerWords; word < (slot + 1) * playerWords; word++)
+                slotToTokens.set(word, 0);
+            slotEpochs.set(slot, current);
+        }
+        return current;
     }
 
     //////
-    public Integer slotToCard(int slot) {
-        return slotToCard[slot];
+    public int slotToCard(int slot) {
+        return slotToCard.get(slot);
+    }
+
+    public int cardToSlot(int card) {
+        return cardToSlot.get(card);
+    }
+
+    /**
+     * @param slot - the slot to check.
+     * @return     - the current version of the slot (changes whenever the card in the slot changes).
+     */
+    public int slotVersion(int slot) {
+        return slotVersions.get(slot);
+    }
+
+    /**
+     * Reads the card in a slot together with the version of the slot, without locking: retries if the dealer
+     * changed the slot while reading.
+     * @param slot - the slot to read.
+     * @return     - the version in the high 32 bits and the card (NONE if none) in the low 32 bits.
+     */
+    public long readSlot(int slot) {
+        while (true) {
+            int version = slotVersions.get(slot);
+            int card = slotToCard.get(slot);
+            if ((version & 1) == 0 && slotVersions.get(slot) == version)
+                return (long) version << 32 | card & 0xFFFFFFFFL;
+            Thread.yield(); //the dealer is in the middle of changing this slot
+        }
+    }
+
+    /**
+     * @return - the number of legal sets among the cards on the table.
+     */
+    public int setCount() {
+        return tableSets.size();
+    }
+
+    /**
+     * @return - an iterator over the legal sets among the cards on the table (sorted card ids, not to be modified).
+     */
+    public Iterator<int[]> sets() {
+        return tableSets.iterator();
     }
 
-    public Integer cardToSlot(int card) {
-        return cardToSlot[card];
+    //adds to the index the sets that the new cards form with the other cards on the table, all at once
+    private void addSetsWith(int[] added) {
+        BitSet isAdded = new BitSet(env.config.deckSize);
+        for (int card : added)
+            isAdded.set(card);
+        int[] others = new int[slotToCard.length()];
+        int count = 0;
+        for (int slot = 0; slot < slotToCard.length(); slot++) {
+            int other = slotToCard.get(slot);
+            if (other != NONE && !isAdded.get(other))
+                others[count++] = other;
+        }
+        int[] cards = new int[env.config.featureSize];
+        List<int[]> sets = new LinkedList<>();
+        for (int i = 0; i < added.length; i++) { //the sets whose first new card is added[i]
+            cards[0] = added[i];
+            int[] candidates = Arrays.copyOf(others, count + added.length - i - 1);
+            System.arraycopy(added, i + 1, candidates, count, added.length - i - 1);
+            collectSets(cards, 1, candidates, 0, sets);
+        }
+        tableSets.addAll(sets);
     }
 
+    //completes cards[depth..] with every combination of others[from..] and collects the legal sets
+    private void collectSets(int[] cards, int depth, int[] others, int from, List<int[]> sets) {
+        if (depth == cards.length) {
+            if (env.util.testSet(cards)) {
+                int[] set = cards.clone();
+                Arrays.sort(set);
+                sets.add(set);
+            }
+            return;
+        }
+        for (int i = from; i <= others.length - (cards.length - depth); i++) {
+            cards[depth] = others[i];
+            collectSets(cards, depth + 1, others, i + 1, sets);
+        }
+    }
+
+    //drops from the index the sets that contain any of the cards, all at once
+    private void removeSetsWith(BitSet cards) {
+        if (!cards.isEmpty())
+            tableSets.removeIf(set -> Arrays.stream(set).anyMatch(cards::get));
+    }
+
+    /**
+     * Removes all the tokens from the table in O(1), by starting a new token epoch. The players keep placing tokens
+     * meanwhile: a token placed in the old epoch after the ui was cleared is taken back by placeToken itself.
+     */
     public void resetSlotToTokens(){
-        slotToTokens = new boolean[env.config.tableSize][env.config.players]; // reset all tokens on the table
+        epoch++; // only the dealer resets the tokens
+        env.ui.removeTokens(); // reset all tokens on the table, after the new epoch is visible to placeToken
     }
 
-}
\ No newline at end of file
+}
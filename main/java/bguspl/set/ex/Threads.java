@@ -0,0 +1,55 @@
+package bguspl.set.ex;
+
+import java.lang.reflect.Method;
+
+/**
+ * This class creates the threads of the players: virtual threads when asked for and the jvm has them (java 21 or
+ * later), platform threads otherwise. Virtual threads are created by reflection, so the game still builds for java 8.
+ */
+final class Threads {
+
+    /**
+     * Thread.ofVirtual(), Thread.Builder.name(String) and Thread.Builder.unstarted(Runnable) (null before java 21).
+     */
+    private static final Method ofVirtual;
+    private static final Method name;
+    private static final Method unstarted;
+
+    static {
+        Method ofVirtualMethod = null, nameMethod = null, unstartedMethod = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtualMethod = Thread.class.getMethod("ofVirtual");
+            nameMethod = builder.getMethod("name", String.class);
+            unstartedMethod = builder.getMethod("unstarted", Runnable.class);
+        } catch (ReflectiveOperationException ignored) {}
+        ofVirtual = ofVirtualMethod;
+        name = nameMethod;
+        unstarted = unstartedMethod;
+    }
+
+    private Threads() {}
+
+    /**
+     * @return - true iff the jvm can create virtual threads.
+     */
+    static boolean virtualThreadsAvailable() {
+        return ofVirtual != null;
+    }
+
+    /**
+     * Creates a thread that is not started yet.
+     * @param virtual - true for a virtual thread (if the jvm has them).
+     * @param task    - the task of the thread.
+     * @param name    - the name of the thread.
+     * @return        - the new thread.
+     */
+    static Thread newThread(boolean virtual, Runnable task, String name) {
+        if (virtual && virtualThreadsAvailable()) {
+            try {
+                return (Thread) unstarted.invoke(Threads.name.invoke(ofVirtual.invoke(null), name), task);
+            } catch (ReflectiveOperationException ignored) {} //can't happen with java 21, fall back to a platform thread
+        }
+        return new Thread(task, name);
+    }
+}
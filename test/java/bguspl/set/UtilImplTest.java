@@ -0,0 +1,334 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UtilImplTest {
+
+    Config config;
+    UtilImpl util;
+
+    @BeforeEach
+    void setUp() {
+        setUp(3, 4);
+    }
+
+    // replaces the fixture with a util for cards of the given features (and other properties as key/value pairs)
+    private void setUp(int featureSize, int featureCount, String... properties) {
+        config = configFor(featureSize, featureCount, properties);
+        util = new UtilImpl(config);
+    }
+
+    private static Config configFor(int featureSize, int featureCount, String... properties) {
+        Properties config = new Properties();
+        config.put("FeatureSize", Integer.toString(featureSize));
+        config.put("FeatureCount", Integer.toString(featureCount));
+        for (int i = 0; i < properties.length; i += 2)
+            config.put(properties[i], properties[i + 1]);
+        return new Config(new MockLogger(), config);
+    }
+
+    private List<Integer> fullDeck() {
+        return IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+    }
+
+    // the plain combination walk, used as a reference for the optimized searches
+    private List<int[]> bruteForceSets(List<Integer> deck) {
+        List<int[]> sets = new LinkedList<>();
+        for (int i = 0; i < deck.size(); ++i)
+            for (int j = i + 1; j < deck.size(); ++j)
+                for (int k = j + 1; k < deck.size(); ++k) {
+                    int[] cards = IntStream.of(deck.get(i), deck.get(j), deck.get(k)).sorted().toArray();
+                    if (util.testSet(cards)) sets.add(cards);
+                }
+        return sets;
+    }
+
+    private void assertSameSets(List<int[]> expected, List<int[]> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i)
+            assertArrayEquals(expected.get(i), actual.get(i));
+    }
+
+    @Test
+    void findSets_FullDeck() {
+        List<int[]> sets = util.findSets(fullDeck(), Integer.MAX_VALUE);
+        assertEquals(1080, sets.size());
+        sets.forEach(set -> assertEquals(true, util.testSet(set)));
+    }
+
+    @Test
+    void findSets_ShuffledPartialDeckMatchesBruteForce() {
+        List<Integer> deck = fullDeck();
+        Collections.shuffle(deck, new Random(7));
+        deck = new LinkedList<>(deck.subList(0, 30));
+        assertSameSets(bruteForceSets(deck), util.findSets(deck, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void findSets_StopsAtCount() {
+        assertEquals(5, util.findSets(fullDeck(), 5).size());
+        assertEquals(0, util.findSets(fullDeck(), 0).size());
+        assertEquals(0, util.findSets(fullDeck(), -1).size());
+    }
+
+    @Test
+    void findSets_NoSets() {
+        // no two of these cards are completed by one of the others
+        assertEquals(0, util.findSets(IntStream.of(0, 1, 3, 4).boxed().collect(Collectors.toList()), 1).size());
+    }
+
+    @Test
+    void cardFeature_MatchesCardToFeatures() {
+        assertArrayEquals(new int[]{1, 2, 0, 1}, util.cardToFeatures(1 * 27 + 2 * 9 + 0 * 3 + 1));
+        for (int card = 0; card < config.deckSize; ++card) {
+            int[] features = util.cardToFeatures(card);
+            for (int i = 0; i < config.featureCount; ++i)
+                assertEquals(features[i], util.cardFeature(card, i));
+        }
+    }
+
+    @Test
+    void constructor_FeatureSizeAboveByteRange() {
+        Config config = configFor(200, 1);
+        assertThrows(IllegalArgumentException.class, () -> new UtilImpl(config));
+    }
+
+    @Test
+    void testSet_FeatureSizeThree() {
+        assertEquals(true, util.testSet(new int[]{0, 1, 2}));
+        assertEquals(true, util.testSet(new int[]{0, 40, 80}));
+        assertEquals(false, util.testSet(new int[]{0, 1, 3}));
+        assertEquals(false, util.testSet(new int[]{0, 4, 80}));
+    }
+
+    @Test
+    void testSets_MatchesTestSet() {
+        List<int[]> sets = util.findSets(fullDeck(), Integer.MAX_VALUE);
+        Random random = new Random(19);
+        int[] candidates = new int[3 * 1000];
+        for (int i = 0; i < candidates.length; i += 3) {
+            // about half of the candidates are legal sets, the rest are random cards
+            int[] candidate = random.nextBoolean() ? sets.get(random.nextInt(sets.size())) : random.ints(3, 0, config.deckSize).toArray();
+            System.arraycopy(candidate, 0, candidates, i, 3);
+        }
+        BitSet results = new BitSet();
+        results.set(0, 2000);
+        util.testSets(candidates, 3, results);
+        for (int i = 0; i < 1000; ++i)
+            assertEquals(util.testSet(Arrays.copyOfRange(candidates, 3 * i, 3 * i + 3)), results.get(i));
+        assertEquals(true, results.get(1500)); // bits past the candidates are left as they were
+    }
+
+    // a legal set by definition: every feature is either the same in all cards or different in all cards
+    private boolean isLegal(Util util, int featureCount, int[] cards) {
+        int[][] features = util.cardsToFeatures(cards);
+        for (int i = 0; i < featureCount; ++i) {
+            int i1 = i;
+            long values = IntStream.range(0, cards.length).map(j -> features[j][i1]).distinct().count();
+            if (values != 1 && values != cards.length) return false;
+        }
+        return true;
+    }
+
+    @Test
+    void testPackedSet_MatchesDefinition() {
+        setUp(4, 3);
+        Random random = new Random(11);
+        for (int i = 0; i < 10000; ++i) {
+            int[] cards = random.ints(4, 0, config.deckSize).toArray();
+            long[] packed = IntStream.of(cards).mapToLong(util::cardToPacked).toArray();
+            assertEquals(isLegal(util, config.featureCount, cards), util.testPackedSet(packed));
+            assertEquals(isLegal(util, config.featureCount, cards), util.testSet(cards));
+        }
+    }
+
+    @Test
+    void countSetsContaining_KeepsRemainingSetsCount() {
+        List<Integer> deck = fullDeck();
+        BitSet cardsInGame = new BitSet(config.deckSize);
+        cardsInGame.set(0, config.deckSize);
+        int remainingSets = util.findSets(deck, Integer.MAX_VALUE).size();
+
+        Collections.shuffle(deck, new Random(3));
+        while (!deck.isEmpty()) {
+            int card = deck.remove(deck.size() - 1);
+            cardsInGame.clear(card);
+            remainingSets -= util.countSetsContaining(card, cardsInGame);
+            assertEquals(bruteForceSets(deck).size(), remainingSets);
+        }
+    }
+
+    @Test
+    void countSetsContaining_FeatureSizeFour() {
+        setUp(4, 2);
+        List<Integer> deck = fullDeck();
+        BitSet cards = new BitSet();
+        cards.set(1, config.deckSize);
+        long expected = util.findSets(deck, Integer.MAX_VALUE).stream().filter(set -> set[0] == 0).count();
+        assertEquals(expected, util.countSetsContaining(0, cards));
+    }
+
+    @Test
+    void countSets_MatchesFindSets() {
+        BitSet all = new BitSet();
+        all.set(0, config.deckSize);
+        assertEquals(1080, util.countSets(all));
+        assertEquals(true, util.anySet(all));
+
+        List<Integer> deck = fullDeck();
+        Random random = new Random(5);
+        for (int i = 0; i < 50; ++i) {
+            Collections.shuffle(deck, random);
+            List<Integer> cards = deck.subList(0, 12);
+            int expected = util.findSets(cards, Integer.MAX_VALUE).size();
+            BitSet bits = new BitSet();
+            cards.forEach(bits::set);
+            int[] array = cards.stream().mapToInt(Integer::intValue).toArray();
+            assertEquals(expected, util.countSets(array));
+            assertEquals(expected, util.countSets(bits));
+            assertEquals(expected > 0, util.anySet(array));
+            assertEquals(expected > 0, util.anySet(bits));
+        }
+    }
+
+    @Test
+    void countSets_FeatureSizeFourMatchesFindSets() {
+        setUp(4, 3);
+        List<Integer> deck = fullDeck();
+        Random random = new Random(23);
+        for (int i = 0; i < 20; ++i) {
+            Collections.shuffle(deck, random);
+            List<Integer> cards = deck.subList(0, 24);
+            List<int[]> sets = util.findSets(cards, Integer.MAX_VALUE);
+            BitSet bits = new BitSet();
+            cards.forEach(bits::set);
+            assertEquals(sets.size(), util.countSets(cards.stream().mapToInt(Integer::intValue).toArray()));
+            assertEquals(sets.size(), util.countSets(bits));
+            assertEquals(!sets.isEmpty(), util.anySet(bits));
+
+            int card = cards.get(0);
+            bits.clear(card);
+            assertEquals(sets.stream().filter(set -> IntStream.of(set).anyMatch(c -> c == card)).count(), util.countSetsContaining(card, bits));
+        }
+    }
+
+    @Test
+    void countSets_ArrayDoesNotAllocate() {
+        int[] cards = fullDeck().subList(0, 12).stream().mapToInt(Integer::intValue).toArray();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        int sets = util.countSets(cards); // warm up
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 10000; ++i) {
+            assertEquals(sets, util.countSets(cards));
+            assertEquals(sets > 0, util.anySet(cards));
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        // a few hundred bytes at most come from the measurement itself, not from the 20000 counts
+        assertTrue(allocated < 1024, allocated + " bytes allocated");
+    }
+
+    @Test
+    void anySet_NoSets() {
+        assertEquals(false, util.anySet(new int[]{0, 1, 3, 4}));
+        assertEquals(false, util.anySet(BitSet.valueOf(new long[]{0b11011})));
+    }
+
+    @Test
+    void streamSets_ParallelMatchesSequential() {
+        List<Integer> deck = fullDeck();
+        Collections.shuffle(deck, new Random(9));
+        List<int[]> expected = bruteForceSets(deck);
+        assertSameSets(expected, util.streamSets(deck).collect(Collectors.toList()));
+        assertSameSets(expected, util.streamSets(deck).parallel().collect(Collectors.toList()));
+    }
+
+    @Test
+    void streamSets_FeatureSizeFour() {
+        setUp(4, 2);
+        List<Integer> deck = fullDeck();
+        // 4 rows, 4 columns and 24 "all different" permutations
+        assertEquals(32, util.streamSets(deck).count());
+        assertEquals(32, util.streamSets(deck).parallel().count());
+    }
+
+    @Test
+    void findSets_ParallelSearch() {
+        setUp(3, 5, "ParallelSearchThreshold", "100", "ParallelSearchThreads", "4");
+        List<Integer> deck = fullDeck();
+        Collections.shuffle(deck, new Random(13));
+
+        assertSameSets(util.streamSets(deck).collect(Collectors.toList()), util.findSets(deck, Integer.MAX_VALUE));
+        List<int[]> any = util.findSets(deck, 1);
+        assertEquals(1, any.size());
+        assertEquals(true, util.testSet(any.get(0)));
+
+        List<Integer> cards = deck.subList(0, 150);
+        BitSet bits = new BitSet();
+        cards.forEach(bits::set);
+        int expected = (int) util.streamSets(cards).count();
+        assertEquals(expected, util.countSets(bits));
+        assertEquals(expected, util.countSets(cards.stream().mapToInt(Integer::intValue).toArray()));
+        assertEquals(true, util.anySet(bits));
+    }
+
+    @Test
+    void countSets_ParallelFeatureSizeFour() {
+        setUp(4, 3, "ParallelSearchThreshold", "20", "ParallelSearchThreads", "4");
+        List<Integer> deck = fullDeck();
+        Collections.shuffle(deck, new Random(29));
+
+        List<Integer> cards = deck.subList(0, 40);
+        BitSet bits = new BitSet();
+        cards.forEach(bits::set);
+        int expected = (int) util.streamSets(cards).count();
+        assertEquals(expected, util.countSets(bits));
+        assertEquals(expected, util.countSets(cards.stream().mapToInt(Integer::intValue).toArray()));
+        assertEquals(expected > 0, util.anySet(bits));
+    }
+
+    @Test
+    void findSets_FeatureSizeFourMatchesDefinition() {
+        setUp(4, 3);
+        List<Integer> deck = fullDeck();
+        Collections.shuffle(deck, new Random(17));
+        deck = deck.subList(0, 40);
+
+        List<int[]> expected = new LinkedList<>();
+        for (int i = 0; i < deck.size(); ++i)
+            for (int j = i + 1; j < deck.size(); ++j)
+                for (int k = j + 1; k < deck.size(); ++k)
+                    for (int l = k + 1; l < deck.size(); ++l) {
+                        int[] cards = IntStream.of(deck.get(i), deck.get(j), deck.get(k), deck.get(l)).sorted().toArray();
+                        if (isLegal(util, config.featureCount, cards)) expected.add(cards);
+                    }
+        assertSameSets(expected, util.findSets(deck, Integer.MAX_VALUE));
+        assertSameSets(expected, util.streamSets(deck).parallel().collect(Collectors.toList()));
+    }
+
+    static class MockLogger extends Logger {
+        protected MockLogger() {
+            super("", null);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ActionQueueTest {
+
+    ActionQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        queue = new ActionQueue(3);
+    }
+
+    @Test
+    void poll_Empty() {
+        assertTrue(queue.isEmpty());
+        assertEquals(-1, queue.poll());
+    }
+
+    @Test
+    void offer_Full() {
+        assertTrue(queue.offer(0));
+        assertTrue(queue.offer(1));
+        assertTrue(queue.offer(2));
+        assertFalse(queue.offer(3));
+
+        assertEquals(0, queue.poll());
+        assertTrue(queue.offer(3)); // the polled cell is free again
+        assertFalse(queue.offer(4));
+    }
+
+    @Test
+    void offerPoll_WrapsAround() {
+        // many laps over the cells, with the queue holding a different number of slots on every lap
+        int next = 0, expected = 0;
+        for (int lap = 0; lap < 100; ++lap) {
+            int count = lap % 3 + 1;
+            for (int i = 0; i < count; ++i)
+                assertTrue(queue.offer(next++));
+            for (int i = 0; i < count; ++i)
+                assertEquals(expected++, queue.poll());
+            assertTrue(queue.isEmpty());
+            assertEquals(-1, queue.poll());
+        }
+    }
+
+    @Test
+    void offerPoll_ConcurrentProducers() throws InterruptedException {
+        int producers = 4, perProducer = 20000;
+        ActionQueue queue = new ActionQueue(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; ++p) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ignored) {
+                    return;
+                }
+                // every slot carries its producer and sequence number, retried until it is accepted
+                for (int i = 0; i < perProducer; ++i)
+                    while (!queue.offer(producer * perProducer + i))
+                        Thread.yield();
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        // the single consumer must see every slot exactly once, and the slots of each producer in order
+        int[] nextOfProducer = new int[producers];
+        start.countDown();
+        for (int received = 0; received < producers * perProducer; ) {
+            int slot = queue.poll();
+            if (slot == -1) {
+                Thread.yield();
+                continue;
+            }
+            int producer = slot / perProducer;
+            assertEquals(nextOfProducer[producer]++, slot % perProducer);
+            received++;
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        assertTrue(queue.isEmpty());
+        for (int p = 0; p < producers; ++p)
+            assertEquals(perProducer, nextOfProducer[p]);
+    }
+}
@@ -0,0 +1,96 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterface;
+import bguspl.set.Util;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Random;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DealerTest {
+
+    Dealer dealer;
+    Player[] players;
+    @Mock
+    Util util;
+    @Mock
+    private UserInterface ui;
+    @Mock
+    private Table table;
+    @Mock
+    private Logger logger;
+
+    // the versions of the slots of the mocked table, changed by every card removed
+    private final int[] versions = new int[12];
+
+    @BeforeEach
+    void setUp() {
+        // purposely do not find the configuration files (use defaults here).
+        Env env = new Env(logger, new Config(logger, (String) null), ui, util);
+        players = new Player[]{mock(Player.class), mock(Player.class), mock(Player.class)};
+        dealer = new Dealer(env, table, players, new Random(1));
+        when(table.slotVersion(anyInt())).thenAnswer(invocation -> versions[(int) invocation.getArgument(0)]);
+        doAnswer(invocation -> {
+            for (int slot : (int[]) invocation.getArgument(0))
+                versions[slot] += 2;
+            return null;
+        }).when(table).removeCards(any());
+    }
+
+    @AfterEach
+    void tearDown() {
+        dealer.scheduler().shutdownNow();
+    }
+
+    @Test
+    void removeCardsFromTable_OverlappingAndStaleClaims() {
+        versions[5] = 2; // slot 5 changed since player 2 saw it
+
+        // all three claims are legal sets, except for the stale one that would be punished if it were checked
+        when(util.testSet(any())).thenAnswer(invocation -> ((int[]) invocation.getArgument(0))[0] != 5);
+
+        // queued out of order: the first claim made (player 0) wins the card in slot 2 over player 1
+        dealer.claimSet(claim(1, 20, new int[]{2, 3, 4}, new int[]{2, 3, 4}, new int[]{0, 0, 0}));
+        dealer.claimSet(claim(0, 10, new int[]{0, 1, 2}, new int[]{0, 1, 2}, new int[]{0, 0, 0}));
+        dealer.claimSet(claim(2, 30, new int[]{5, 6, 7}, new int[]{5, 6, 7}, new int[]{0, 0, 0}));
+
+        dealer.removeCardsFromTable();
+
+        assertTrue(players[0].toPoint);
+        assertFalse(players[1].toPoint);
+        assertFalse(players[2].toPoint);
+        assertFalse(players[0].toPunish);
+        assertFalse(players[1].toPunish);
+        assertFalse(players[2].toPunish);
+        verify(table).removeCards(aryEq(new int[]{0, 1, 2}));
+        verify(table, times(1)).removeCards(any());
+    }
+
+    private static Claim claim(int player, long time, int[] slots, int[] cards, int[] versions) {
+        Claim claim = new Claim(player, slots.length);
+        System.arraycopy(slots, 0, claim.slots, 0, slots.length);
+        System.arraycopy(cards, 0, claim.cards, 0, cards.length);
+        System.arraycopy(versions, 0, claim.versions, 0, versions.length);
+        claim.time = time;
+        return claim;
+    }
+}
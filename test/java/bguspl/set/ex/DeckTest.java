@@ -0,0 +1,99 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeckTest {
+
+    Deck deck;
+
+    @BeforeEach
+    void setUp() {
+        deck = new Deck(81, new Random(1));
+    }
+
+    @Test
+    void constructor_AllCardsInTheDeck() {
+        assertEquals(81, deck.size());
+        for (int card = 0; card < 81; ++card)
+            assertTrue(deck.contains(card));
+    }
+
+    @Test
+    void draw_EveryCardOnce() {
+        BitSet drawn = new BitSet();
+        for (int i = 0; i < 81; ++i) {
+            int card = deck.draw();
+            assertFalse(drawn.get(card));
+            assertFalse(deck.contains(card));
+            drawn.set(card);
+            assertEquals(80 - i, deck.size());
+        }
+        assertEquals(81, drawn.cardinality());
+    }
+
+    @Test
+    void remove_OnlyCardsInTheDeck() {
+        deck.remove(80); // the last card, nothing to swap
+        deck.remove(0);
+        assertEquals(79, deck.size());
+        assertFalse(deck.contains(0));
+        assertFalse(deck.contains(80));
+
+        deck.remove(0); // not in the deck anymore
+        assertEquals(79, deck.size());
+    }
+
+    @Test
+    void add_OnlyCardsNotInTheDeck() {
+        deck.remove(7);
+        deck.add(7);
+        assertEquals(81, deck.size());
+        assertTrue(deck.contains(7));
+
+        deck.add(7); // already in the deck
+        assertEquals(81, deck.size());
+    }
+
+    @Test
+    void removeAdd_KeepsTheIndexConsistent() {
+        // random swap-removes and returns, checked against a plain set of the cards after every step
+        Random random = new Random(3);
+        BitSet expected = new BitSet();
+        expected.set(0, 81);
+        for (int step = 0; step < 10000; ++step) {
+            int card = random.nextInt(81);
+            int action = random.nextInt(3);
+            if (action == 0) {
+                deck.remove(card);
+                expected.clear(card);
+            } else if (action == 1) {
+                deck.add(card);
+                expected.set(card);
+            } else if (deck.size() > 0) {
+                int drawn = deck.draw();
+                assertTrue(expected.get(drawn));
+                expected.clear(drawn);
+            }
+            assertEquals(expected.cardinality(), deck.size());
+            assertEquals(expected.get(card), deck.contains(card));
+        }
+        for (int card = 0; card < 81; ++card)
+            assertEquals(expected.get(card), deck.contains(card));
+
+        // every card left is drawn exactly once
+        while (deck.size() > 0) {
+            int drawn = deck.draw();
+            assertTrue(expected.get(drawn));
+            expected.clear(drawn);
+        }
+        assertTrue(expected.isEmpty());
+    }
+}
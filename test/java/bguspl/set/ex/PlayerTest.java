@@ -11,9 +11,12 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.logging.Logger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
@@ -33,6 +36,8 @@ class PlayerTest {
     private Dealer dealer;
     @Mock
     private Logger logger;
+    @Mock
+    private ScheduledExecutorService scheduler;
 
     void assertInvariants() {
         assertTrue(player.id >= 0);
@@ -43,6 +48,7 @@ class PlayerTest {
     void setUp() {
         // purposely do not find the configuration files (use defaults here).
         Env env = new Env(logger, new Config(logger, (String) null), ui, util);
+        when(dealer.scheduler()).thenReturn(scheduler);
         player = new Player(env, dealer, table, 0, false);
         assertInvariants();
     }
@@ -70,4 +76,37 @@ class PlayerTest {
         // check that ui.setScore was called with the player's id and the correct score
         verify(ui).setScore(eq(player.id), eq(expectedScore));
     }
-}
\ No newline at end of file
+
+    @Test
+    void keyPressed_DoesNotAllocate() {
+        Env env = new Env(logger, new Config(logger, (String) null), new TableTest.MockUserInterface(), util);
+        Table table = new Table(env);
+        table.placeCard(0, 0);
+        table.placeCard(1, 1);
+        Player player = new Player(env, dealer, table, 0, true);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        pressKeys(player, 10000); // warm up
+        long before = threads.getThreadAllocatedBytes(thread);
+        pressKeys(player, 100000);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        // a few hundred bytes at most come from the measurement itself, not from the 400000 key presses
+        assertTrue(allocated < 1024, allocated + " bytes allocated");
+        assertFalse(table.hasToken(0, 0));
+        assertFalse(table.hasToken(0, 1));
+    }
+
+    private static final int[] KEYS = {0, 1, 0, 1};
+
+    //places and removes tokens on slots 0 and 1, handling every key press as the player thread would
+    private void pressKeys(Player player, int times) {
+        for (int i = 0; i < times; i++) {
+            for (int slot : KEYS) {
+                player.keyPressed(slot);
+                player.handleKeys();
+            }
+        }
+    }
+}
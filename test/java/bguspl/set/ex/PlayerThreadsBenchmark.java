@@ -0,0 +1,118 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterfaceDecorator;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures how long the dealer takes to start the player threads, and the memory they take, in a headless game of
+ * idle computer players. Not a unit test (surefire skips it), run it after mvn test-compile with
+ *
+ *   java -XX:NativeMemoryTracking=summary -cp target/classes:target/test-classes bguspl.set.ex.PlayerThreadsBenchmark 1000 true
+ *
+ * where the arguments are the number of players and VirtualThreads. Native memory tracking is optional, without it
+ * the stacks of the platform threads are not reported. Virtual threads need a java 21 runtime (no special build),
+ * before that the dealer falls back to platform threads.
+ */
+public class PlayerThreadsBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        boolean virtual = args.length > 1 && Boolean.parseBoolean(args[1]);
+
+        Properties properties = new Properties();
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", Integer.toString(players));
+        properties.put("ComputerKeyPressesPerSecond", "0"); // the players only wait, like humans that think
+        properties.put("VirtualThreads", Boolean.toString(virtual));
+        properties.put("TableDelaySeconds", "0");
+        properties.put("LogLevel", "OFF");
+        Logger logger = Logger.getLogger("benchmark");
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, properties);
+        Util util = new UtilImpl(config);
+        Env env = new Env(logger, config, new UserInterfaceDecorator(logger, util, null), util);
+        Table table = new Table(env);
+        Player[] playerArray = new Player[players];
+        Dealer dealer = new Dealer(env, table, playerArray);
+        for (int i = 0; i < players; i++)
+            playerArray[i] = new Player(env, dealer, table, i, false);
+
+        Snapshot before = new Snapshot();
+        long start = System.nanoTime();
+        Thread dealerThread = new Thread(dealer, "dealer");
+        dealerThread.start();
+        while (table.countCards() == 0) // the dealer deals the first cards once all the players started
+            Thread.sleep(1);
+        long startMillis = (System.nanoTime() - start) / 1000000;
+        Snapshot after = new Snapshot();
+
+        System.out.printf("java %s, %d players on %s threads%n", System.getProperty("java.version"), players,
+                virtual && Threads.virtualThreadsAvailable() ? "virtual" : "platform");
+        System.out.printf("start time:          %d ms (%.1f us per player)%n", startMillis, startMillis * 1000.0 / players);
+        System.out.printf("platform threads:    +%d%n", after.threads - before.threads);
+        System.out.printf("heap used:           +%.1f MB%n", (after.heap - before.heap) / 1e6);
+        if (before.threadStackCommitted >= 0)
+            System.out.printf("thread stacks (NMT): +%.1f MB reserved, +%.1f MB committed%n",
+                    (after.threadStackReserved - before.threadStackReserved) / 1e6,
+                    (after.threadStackCommitted - before.threadStackCommitted) / 1e6);
+        if (before.rss >= 0)
+            System.out.printf("resident set:        +%.1f MB%n", (after.rss - before.rss) / 1e6);
+
+        dealer.terminate();
+        dealerThread.join();
+        System.exit(0);
+    }
+
+    //the memory and threads of the jvm at one moment, after a full gc (-1 for what this platform can't tell)
+    private static class Snapshot {
+        final long heap, threads, rss;
+        long threadStackReserved = -1, threadStackCommitted = -1;
+
+        Snapshot() throws Exception {
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            memory.gc();
+            heap = memory.getHeapMemoryUsage().getUsed();
+            threads = ManagementFactory.getThreadMXBean().getThreadCount();
+            rss = residentSetSize();
+            readNativeMemoryTracking();
+        }
+
+        //VmRSS of /proc/self/status (linux only)
+        private static long residentSetSize() {
+            try {
+                for (String line : Files.readAllLines(Paths.get("/proc/self/status")))
+                    if (line.startsWith("VmRSS:"))
+                        return Long.parseLong(line.replaceAll("\\D", "")) * 1024;
+            } catch (IOException | RuntimeException ignored) {}
+            return -1;
+        }
+
+        //the "Thread" line of the native memory tracking summary (jcmd VM.native_memory summary), if it is on
+        private void readNativeMemoryTracking() {
+            try {
+                String summary = (String) ManagementFactory.getPlatformMBeanServer().invoke(
+                        new ObjectName("com.sun.management:type=DiagnosticCommand"), "vmNativeMemory",
+                        new Object[]{new String[]{"summary"}}, new String[]{String[].class.getName()});
+                Matcher matcher = Pattern.compile("- +Thread \\(reserved=(\\d+)KB, committed=(\\d+)KB\\)").matcher(summary);
+                if (matcher.find()) {
+                    threadStackReserved = Long.parseLong(matcher.group(1)) * 1024;
+                    threadStackCommitted = Long.parseLong(matcher.group(2)) * 1024;
+                }
+            } catch (Exception ignored) {} //not a hotspot jvm
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class SolverStrategyTest {
+
+    Env env;
+    Table table;
+    Player player;
+    SolverStrategy strategy;
+
+    private void setUp(double errorRate, int[] cards) {
+        Config config = TableTest.configFor("ComputerStrategy", "Solver", "ComputerReactionSeconds", "0",
+                "ComputerErrorRate", Double.toString(errorRate));
+        env = new Env(new TableTest.MockLogger(), config, new TableTest.MockUserInterface(), new UtilImpl(config));
+        table = new Table(env);
+        int[] slots = new int[cards.length];
+        for (int i = 0; i < slots.length; ++i)
+            slots[i] = i;
+        table.placeCards(cards, slots);
+        player = new Player(env, mock(Dealer.class), table, 0, false);
+        strategy = new SolverStrategy(env, table, player, new Random(1));
+    }
+
+    // presses the keys the strategy chooses until it waits, then answers the claim and takes the tokens back
+    private int[] pressSet() {
+        int[] cards = new int[env.config.featureSize];
+        int count = 0;
+        for (int slot = strategy.nextKey(); slot != -1; slot = strategy.nextKey()) {
+            assertTrue(table.placeToken(0, slot));
+            cards[count++] = table.slotToCard(slot);
+        }
+        assertEquals(cards.length, count);
+        for (int slot = 0; slot < env.config.tableSize; ++slot)
+            table.removeToken(0, slot);
+        player.claimChecked();
+        return cards;
+    }
+
+    private int common(int[] cards, int[] set) {
+        int count = 0;
+        for (int card : cards)
+            for (int other : set)
+                if (card == other) ++count;
+        return count;
+    }
+
+    @Test
+    void nextKey_PressesTheSetOnTheTable() {
+        setUp(0, new int[]{0, 1, 2, 4}); // {0, 1, 2} is the only set
+        for (int round = 0; round < 10; ++round) {
+            int[] cards = pressSet();
+            Arrays.sort(cards);
+            assertArrayEquals(new int[]{0, 1, 2}, cards);
+        }
+    }
+
+    @Test
+    void nextKey_PressesRandomSets() {
+        setUp(0, new int[]{0, 1, 2, 3, 6, 4, 8, 9, 18, 27, 54, 13}); // a full table with several sets
+        assertTrue(table.setCount() > 1);
+
+        Set<List<Integer>> pressed = new HashSet<>();
+        for (int round = 0; round < 50; ++round) {
+            int[] cards = pressSet();
+            assertTrue(env.util.testSet(cards));
+            Arrays.sort(cards);
+            pressed.add(Arrays.stream(cards).boxed().collect(Collectors.toList()));
+        }
+        assertEquals(table.setCount(), pressed.size());
+    }
+
+    @Test
+    void nextKey_MistakesWithTheErrorRate() {
+        setUp(1, new int[]{0, 1, 2, 4, 5, 9, 10, 12, 13, 27, 28, 30}); // a full table
+
+        for (int round = 0; round < 50; ++round) {
+            int[] cards = pressSet();
+            // every round is a mistake: exactly one card of one of the sets is replaced by another card
+            assertFalse(env.util.testSet(cards));
+            int common = 0;
+            for (Iterator<int[]> sets = table.sets(); sets.hasNext(); )
+                common = Math.max(common, common(cards, sets.next()));
+            assertEquals(cards.length - 1, common);
+        }
+    }
+
+    @Test
+    void nextKey_KeepsThePlanUntilTheClaimIsAnswered() {
+        setUp(0, new int[]{0, 1, 2, 4, 5, 9, 10, 12, 13, 27, 28, 30}); // a full table
+        int[] slots = new int[env.config.featureSize];
+        for (int i = 0; i < slots.length; ++i) {
+            slots[i] = strategy.nextKey();
+            table.placeToken(0, slots[i]);
+        }
+        // the player thread did not send the claim yet, the plan is kept
+        assertEquals(-1, strategy.nextKey());
+        table.removeToken(0, slots[0]);
+        assertEquals(slots[0], strategy.nextKey());
+    }
+
+    @Test
+    void nextKey_NoSetOnTheTable() {
+        setUp(0, new int[]{0, 1, 3, 4}); // no two of these cards are completed by one of the others
+        assertEquals(0, table.setCount());
+        for (int i = 0; i < 10; ++i)
+            assertEquals(-1, strategy.nextKey());
+
+        table.placeCard(2, 4); // completes {0, 1, 2}
+        assertEquals(3, pressSet().length);
+    }
+}
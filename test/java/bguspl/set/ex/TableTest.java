@@ -4,62 +4,77 @@ import bguspl.set.Config;
 import bguspl.set.Env;
 import bguspl.set.UserInterface;
 import bguspl.set.Util;
+import bguspl.set.UtilImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.BitSet;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TableTest {
 
     Table table;
-    private Integer[] slotToCard;
-    private Integer[] cardToSlot;
+    private AtomicIntegerArray slotToCard;
+    private AtomicIntegerArray cardToSlot;
 
     @BeforeEach
     void setUp() {
 
-        Properties properties = new Properties();
-        properties.put("Rows", "2");
-        properties.put("Columns", "2");
-        properties.put("FeatureSize", "3");
-        properties.put("FeatureCount", "4");
-        properties.put("TableDelaySeconds", "0");
-        properties.put("PlayerKeys1", "81,87,69,82");
-        properties.put("PlayerKeys2", "85,73,79,80");
-        MockLogger logger = new MockLogger();
-        Config config = new Config(logger, properties);
-        slotToCard = new Integer[config.tableSize];
-        cardToSlot = new Integer[config.deckSize];
-
-        Env env = new Env(logger, config, new MockUserInterface(), new MockUtil());
+        Config config = configFor("Rows", "2", "Columns", "2", "FeatureSize", "3", "FeatureCount", "4",
+                "PlayerKeys1", "81,87,69,82", "PlayerKeys2", "85,73,79,80");
+        slotToCard = Table.emptyArray(config.tableSize);
+        cardToSlot = Table.emptyArray(config.deckSize);
+
+        Env env = new Env(new MockLogger(), config, new MockUserInterface(), new MockUtil());
         table = new Table(env, slotToCard, cardToSlot);
     }
 
+    // the default configuration without a table delay, with other properties given as key/value pairs
+    static Config configFor(String... properties) {
+        Properties config = new Properties();
+        config.put("TableDelaySeconds", "0");
+        for (int i = 0; i < properties.length; i += 2)
+            config.put(properties[i], properties[i + 1]);
+        return new Config(new MockLogger(), config);
+    }
+
+    // a table of the default configuration that indexes its sets with the real util
+    private static Table indexingTable() {
+        Config config = configFor();
+        return new Table(new Env(new MockLogger(), config, new MockUserInterface(), new UtilImpl(config)));
+    }
+
     private int fillSomeSlots() {
-        slotToCard[1] = 3;
-        slotToCard[2] = 5;
-        cardToSlot[3] = 1;
-        cardToSlot[5] = 2;
+        slotToCard.set(1, 3);
+        slotToCard.set(2, 5);
+        cardToSlot.set(3, 1);
+        cardToSlot.set(5, 2);
 
         return 2;
     }
 
     private void fillAllSlots() {
-        for (int i = 0; i < slotToCard.length; ++i) {
-            slotToCard[i] = i;
-            cardToSlot[i] = i;
+        for (int i = 0; i < slotToCard.length(); ++i) {
+            slotToCard.set(i, i);
+            cardToSlot.set(i, i);
         }
     }
 
     private void placeSomeCardsAndAssert() throws InterruptedException {
         table.placeCard(8, 2);
 
-        assertEquals(8, (int) slotToCard[2]);
-        assertEquals(2, (int) cardToSlot[8]);
+        assertEquals(8, slotToCard.get(2));
+        assertEquals(2, cardToSlot.get(8));
     }
 
     @Test
@@ -79,7 +94,7 @@ class TableTest {
     void countCards_AllSlotsAreFilled() {
 
         fillAllSlots();
-        assertEquals(slotToCard.length, table.countCards());
+        assertEquals(slotToCard.length(), table.countCards());
     }
 
     @Test
@@ -95,6 +110,102 @@ class TableTest {
         placeSomeCardsAndAssert();
     }
 
+    @Test
+    void setCount_FollowsPlacedAndRemovedCards() {
+        Table table = indexingTable();
+        table.placeCard(0, 0);
+        table.placeCard(1, 1);
+        assertEquals(0, table.setCount());
+        table.placeCard(2, 2);
+        table.placeCard(80, 3);
+        table.placeCard(40, 4);
+        assertEquals(2, table.setCount()); // {0, 1, 2} and {0, 40, 80}
+        table.removeCard(2);
+        assertEquals(1, table.setCount());
+        assertArrayEquals(new int[]{0, 40, 80}, table.sets().next());
+        table.removeCard(0);
+        assertEquals(0, table.setCount());
+    }
+
+    @Test
+    void placeCards_IndexesTheWholeBatch() {
+        Table table = indexingTable();
+        table.placeCards(new int[]{0, 1, 2, 80, 40}, new int[]{0, 1, 2, 3, 4});
+        assertEquals(5, table.countCards());
+        assertEquals(2, table.setCount()); // {0, 1, 2} and {0, 40, 80}
+        table.placeCards(new int[]{41}, new int[]{3}); // replaces 80
+        assertEquals(1, table.setCount());
+        table.removeCards(new int[]{2, 0, 5}); // slot 5 is empty
+        assertEquals(3, table.countCards());
+        assertEquals(0, table.setCount());
+    }
+
+    @Test
+    void placeToken_OnlyOnCardsAndRemovedWithTheCard() {
+        fillSomeSlots();
+        assertFalse(table.placeToken(0, 0));
+        assertTrue(table.placeToken(0, 1));
+        assertTrue(table.placeToken(1, 1));
+        assertTrue(table.hasToken(1, 1));
+        table.removeCard(1);
+        assertFalse(table.hasToken(0, 1));
+        assertFalse(table.hasToken(1, 1));
+        assertFalse(table.placeToken(0, 1));
+    }
+
+    @Test
+    void resetSlotToTokens_RemovesAllTokens() {
+        fillAllSlots();
+        table.placeToken(0, 0);
+        table.placeToken(0, 3);
+        table.placeToken(1, 3);
+        assertEquals(0b1001, table.tokenSlots(0, 0));
+        assertEquals(0b11, table.tokens(3, 0));
+        table.resetSlotToTokens();
+        assertEquals(0, table.tokenSlots(0, 0));
+        assertEquals(0, table.tokens(3, 0));
+        assertFalse(table.removeToken(1, 3));
+        assertTrue(table.placeToken(1, 0));
+        assertEquals(0b10, table.tokens(0, 0));
+    }
+
+    @Test
+    void resetSlotToTokens_RacingWithPlaceToken() {
+        TokenTrackingUserInterface ui = new TokenTrackingUserInterface();
+        Config config = configFor();
+        Table table = new Table(new Env(new MockLogger(), config, ui, new MockUtil()));
+        table.placeCards(new int[]{0, 1}, new int[]{0, 1});
+        assertTrue(table.placeToken(0, 0));
+
+        // the dealer resets the tokens after player 1 read the epoch, and clears the ui before its token is shown
+        ui.beforePlaceToken = table::resetSlotToTokens;
+        assertFalse(table.placeToken(1, 1));
+        ui.beforePlaceToken = null;
+        assertFalse(table.hasToken(1, 1));
+        assertEquals(0, table.tokenSlots(1, 0));
+        assertEquals(0, ui.tokens.cardinality());
+
+        // the slot takes tokens again in the new epoch, and they go with the card
+        assertTrue(table.placeToken(1, 1));
+        assertTrue(ui.tokens.get(1 * config.tableSize + 1));
+        table.removeCard(1);
+        assertEquals(0, ui.tokens.cardinality());
+    }
+
+    @Test
+    void slotVersion_ChangesWithTheCard() {
+        fillSomeSlots();
+        long read = table.readSlot(1);
+        assertEquals(3, (int) read);
+        int version = (int) (read >>> 32);
+        assertEquals(version, table.slotVersion(1));
+        table.removeCard(1);
+        assertEquals(Table.NONE, table.slotToCard(1));
+        assertEquals(Table.NONE, table.cardToSlot(3));
+        assertNotEquals(version, table.slotVersion(1));
+        assertEquals(0, table.slotVersion(1) % 2);
+    }
+
     static class MockUserInterface implements UserInterface {
         @Override
         public void dispose() {}
@@ -103,6 +214,16 @@ class TableTest {
         @Override
         public void removeCard(int slot) {}
         @Override
+        public void setCountdownDeadline(long deadline, long warningMillis) {}
+        @Override
+        public long cardsShownBy() {
+            return System.currentTimeMillis();
+        }
+        @Override
+        public void placeCards(int[] cards, int[] slots) {}
+        @Override
+        public void removeCards(int[] slots) {}
+        @Override
         public void setCountdown(long millies, boolean warn) {}
         @Override
         public void setElapsed(long millies) {}
@@ -122,12 +243,44 @@ class TableTest {
         public void announceWinner(int[] players) {}
     };
 
+    //keeps the tokens shown (bit player * tableSize + slot), and runs a hook just before showing a token
+    static class TokenTrackingUserInterface extends MockUserInterface {
+        final BitSet tokens = new BitSet();
+        Runnable beforePlaceToken;
+        private final int tableSize = 12;
+
+        @Override
+        public void placeToken(int player, int slot) {
+            if (beforePlaceToken != null)
+                beforePlaceToken.run();
+            tokens.set(player * tableSize + slot);
+        }
+        @Override
+        public void removeTokens() {
+            tokens.clear();
+        }
+        @Override
+        public void removeTokens(int slot) {
+            for (int player = 0; player * tableSize < tokens.length(); ++player)
+                tokens.clear(player * tableSize + slot);
+        }
+        @Override
+        public void removeToken(int player, int slot) {
+            tokens.clear(player * tableSize + slot);
+        }
+    }
+
     static class MockUtil implements Util {
         @Override
         public int[] cardToFeatures(int card) {
             return new int[0];
         }
 
+        @Override
+        public int cardFeature(int card, int feature) {
+            return 0;
+        }
+
         @Override
         public int[][] cardsToFeatures(int[] cards) {
             return new int[0][];
@@ -138,11 +291,54 @@ class TableTest {
             return false;
         }
 
+        @Override
+        public Stream<int[]> streamSets(List<Integer> deck) {
+            return Stream.empty();
+        }
+
+        @Override
+        public void testSets(int[] flatCandidates, int setSize, BitSet out) {}
+
+        @Override
+        public long cardToPacked(int card) {
+            return 0;
+        }
+
+        @Override
+        public boolean testPackedSet(long[] packedCards) {
+            return false;
+        }
+
         @Override
         public List<int[]> findSets(List<Integer> deck, int count) {
             return null;
         }
 
+        @Override
+        public int countSets(int[] cards) {
+            return 0;
+        }
+
+        @Override
+        public int countSets(BitSet cards) {
+            return 0;
+        }
+
+        @Override
+        public boolean anySet(int[] cards) {
+            return false;
+        }
+
+        @Override
+        public boolean anySet(BitSet cards) {
+            return false;
+        }
+
+        @Override
+        public int countSetsContaining(int card, BitSet cards) {
+            return 0;
+        }
+
         @Override
         public void spin() {}
     }
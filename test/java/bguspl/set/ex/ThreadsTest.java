@@ -0,0 +1,58 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ThreadsTest {
+
+    // Thread.isVirtual() by reflection (false before java 21, where every thread is a platform thread)
+    private static boolean isVirtual(Thread thread) throws ReflectiveOperationException {
+        try {
+            return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static boolean javaHasVirtualThreads() {
+        String version = System.getProperty("java.specification.version");
+        return !version.startsWith("1.") && Integer.parseInt(version) >= 21;
+    }
+
+    // starts the thread and returns the thread its task ran on
+    private static Thread runAndJoin(Thread thread, AtomicReference<Thread> ranOn) throws InterruptedException {
+        assertEquals(Thread.State.NEW, thread.getState());
+        thread.start();
+        thread.join();
+        return ranOn.get();
+    }
+
+    @Test
+    void virtualThreadsAvailable_MatchesTheJavaVersion() {
+        assertEquals(javaHasVirtualThreads(), Threads.virtualThreadsAvailable());
+    }
+
+    @Test
+    void newThread_Platform() throws Exception {
+        AtomicReference<Thread> ranOn = new AtomicReference<>();
+        Thread thread = Threads.newThread(false, () -> ranOn.set(Thread.currentThread()), "player 0");
+        assertEquals("player 0", thread.getName());
+        assertFalse(isVirtual(thread));
+        assertSame(thread, runAndJoin(thread, ranOn));
+    }
+
+    @Test
+    void newThread_VirtualWhenAvailable() throws Exception {
+        // a virtual thread on java 21 or later, and a platform thread (the fallback) before
+        AtomicReference<Thread> ranOn = new AtomicReference<>();
+        Thread thread = Threads.newThread(true, () -> ranOn.set(Thread.currentThread()), "player 1");
+        assertEquals("player 1", thread.getName());
+        assertEquals(Threads.virtualThreadsAvailable(), isVirtual(thread));
+        assertSame(thread, runAndJoin(thread, ranOn));
+    }
+}